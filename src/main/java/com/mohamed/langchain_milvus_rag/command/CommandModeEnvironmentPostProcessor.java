@@ -0,0 +1,34 @@
+package com.mohamed.langchain_milvus_rag.command;
+
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Switches off background ingestion when the application is started to run one
+ * of the one-shot commands, so an export, import or replay does not replay the
+ * pending ingestion log (and call the embedding model) or map the same log as
+ * a server that may be running next to it. Runs before any bean is created,
+ * which an {@code ApplicationRunner} cannot do.
+ */
+public class CommandModeEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final List<String> COMMAND_OPTIONS = List.of(
+            SnapshotCommand.EXPORT_OPTION, SnapshotCommand.IMPORT_OPTION, ReplayCommand.REPLAY_OPTION);
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        for (String option : COMMAND_OPTIONS) {
+            if (environment.containsProperty(option)) {
+                environment.getPropertySources().addFirst(
+                        new MapPropertySource("commandMode", Map.of("rag.ingestion.enabled", "false")));
+                return;
+            }
+        }
+    }
+}
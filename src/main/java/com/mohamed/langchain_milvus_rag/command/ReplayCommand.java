@@ -0,0 +1,127 @@
+package com.mohamed.langchain_milvus_rag.command;
+
+
+import com.mohamed.langchain_milvus_rag.entity.QueryTrace;
+import com.mohamed.langchain_milvus_rag.service.MilvusService;
+import com.mohamed.langchain_milvus_rag.service.QueryReplayService;
+import com.mohamed.langchain_milvus_rag.service.QueryReplayService.ReplayResult;
+import com.mohamed.langchain_milvus_rag.service.SlowQueryLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays a slow-query log. Runs when the application is started with
+ * {@code --trace.replay=<file or directory>} and exits when done. Search
+ * settings default to the configured ones and can be overridden per run, e.g.
+ * to compare nprobe values or a collection rebuilt with other index params:
+ * <pre>
+ * java -jar app.jar --spring.main.web-application-type=none \
+ *     --trace.replay=data/slow-queries --replay.nprobe=32 --replay.top-k=3 \
+ *     --replay.threshold=0.75 --replay.collections=documents_ivf_sq8 --replay.runs=5
+ * </pre>
+ */
+@Component
+public class ReplayCommand implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayCommand.class);
+
+    static final String REPLAY_OPTION = "trace.replay";
+
+    @Autowired
+    private QueryReplayService queryReplayService;
+
+    @Autowired
+    private MilvusService milvusService;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(REPLAY_OPTION)) {
+            return;
+        }
+
+        int exitCode = 0;
+        try {
+            Path source = Paths.get(args.getOptionValues(REPLAY_OPTION).get(0));
+            List<QueryTrace> traces = SlowQueryLog.read(source);
+
+            MilvusService.SearchOptions defaults = milvusService.defaultSearchOptions();
+            MilvusService.SearchOptions options = new MilvusService.SearchOptions(
+                    intOption(args, "replay.top-k", defaults.topK()),
+                    args.containsOption("replay.threshold")
+                            ? Double.parseDouble(args.getOptionValues("replay.threshold").get(0))
+                            : defaults.threshold(),
+                    intOption(args, "replay.nprobe", defaults.nprobe()));
+            List<String> collections = args.containsOption("replay.collections")
+                    ? Arrays.asList(args.getOptionValues("replay.collections").get(0).split(","))
+                    : milvusService.getSearchCollections();
+            int runs = intOption(args, "replay.runs", 3);
+
+            logger.info("Replaying {} traces from {} against {} with {}", traces.size(), source, collections, options);
+            List<ReplayResult> results = queryReplayService.replay(traces, collections, options, runs);
+            report(results);
+        } catch (Exception e) {
+            logger.error("Replay failed: ", e);
+            exitCode = 1;
+        }
+
+        int code = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> code));
+    }
+
+    private void report(List<ReplayResult> results) {
+        if (results.isEmpty()) {
+            logger.info("Nothing to replay");
+            return;
+        }
+        long[] captured = new long[results.size()];
+        long[] replayed = new long[results.size()];
+        double overlapSum = 0;
+        int overlapCount = 0;
+        for (int i = 0; i < results.size(); i++) {
+            ReplayResult result = results.get(i);
+            QueryTrace trace = result.captured();
+            captured[i] = trace.getSearchMicros();
+            replayed[i] = result.searchMicros();
+            if (!Double.isNaN(result.overlap())) {
+                overlapSum += result.overlap();
+                overlapCount++;
+            }
+            logger.info("{} search {} -> {} ms, hits {} -> {}, overlap {}, prompt {} -> {} chars (captured total {} ms, model {} ms)",
+                    trace.getTraceId(), trace.getSearchMicros() / 1000.0, result.searchMicros() / 1000.0,
+                    trace.getDocumentIds().size(), result.hits().size(),
+                    Double.isNaN(result.overlap()) ? "n/a" : String.format("%.2f", result.overlap()),
+                    trace.getPromptChars(), result.promptChars(),
+                    trace.getTotalMicros() / 1000, trace.getModelMicros() / 1000);
+        }
+        Arrays.sort(captured);
+        Arrays.sort(replayed);
+        logger.info("Search latency ms  captured p50={} p95={} max={}  replayed p50={} p95={} max={}",
+                percentile(captured, 0.50), percentile(captured, 0.95), captured[captured.length - 1] / 1000.0,
+                percentile(replayed, 0.50), percentile(replayed, 0.95), replayed[replayed.length - 1] / 1000.0);
+        logger.info("Mean overlap with captured hits: {}",
+                overlapCount == 0 ? "n/a" : String.format("%.3f", overlapSum / overlapCount));
+    }
+
+    private static double percentile(long[] sortedMicros, double p) {
+        int index = (int) Math.ceil(p * sortedMicros.length) - 1;
+        return sortedMicros[Math.max(0, index)] / 1000.0;
+    }
+
+    private static int intOption(ApplicationArguments args, String name, int defaultValue) {
+        return args.containsOption(name) ? Integer.parseInt(args.getOptionValues(name).get(0)) : defaultValue;
+    }
+}
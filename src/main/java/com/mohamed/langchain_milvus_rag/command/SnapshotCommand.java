@@ -0,0 +1,66 @@
+package com.mohamed.langchain_milvus_rag.command;
+
+
+import com.mohamed.langchain_milvus_rag.service.SnapshotService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * One-shot snapshot commands. Runs when the application is started with
+ * {@code --snapshot.export=<file>} or {@code --snapshot.import=<file>} and
+ * exits when done, e.g.
+ * <pre>
+ * java -jar app.jar --spring.main.web-application-type=none --snapshot.export=documents.snap
+ * </pre>
+ */
+@Component
+public class SnapshotCommand implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotCommand.class);
+
+    static final String EXPORT_OPTION = "snapshot.export";
+    static final String IMPORT_OPTION = "snapshot.import";
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        boolean export = args.containsOption(EXPORT_OPTION);
+        boolean load = args.containsOption(IMPORT_OPTION);
+        if (!export && !load) {
+            return;
+        }
+
+        int exitCode = 0;
+        try {
+            if (export) {
+                Path target = Paths.get(args.getOptionValues(EXPORT_OPTION).get(0));
+                long rows = snapshotService.exportTo(target);
+                logger.info("Snapshot export finished: {} rows written to {}", rows, target);
+            } else {
+                Path source = Paths.get(args.getOptionValues(IMPORT_OPTION).get(0));
+                long rows = snapshotService.importFrom(source);
+                logger.info("Snapshot import finished: {} rows loaded from {}", rows, source);
+            }
+        } catch (Exception e) {
+            logger.error("Snapshot command failed: ", e);
+            exitCode = 1;
+        }
+
+        int code = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> code));
+    }
+}
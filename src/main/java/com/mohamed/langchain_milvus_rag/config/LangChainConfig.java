@@ -6,7 +6,8 @@ import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
-import dev.langchain4j.data.document.splitter.DocumentSplitter;
+import dev.langchain4j.data.document.DocumentSplitter;
+import com.mohamed.langchain_milvus_rag.splitter.ParallelDocumentSplitter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,6 +20,9 @@ public class LangChainConfig {
     @Value("${openai.api.key}")
     private String openaiApiKey;
     
+    @Value("${openai.api.base-url}")
+    private String openaiBaseUrl;
+    
     @Value("${openai.api.model}")
     private String chatModel;
     
@@ -31,9 +35,16 @@ public class LangChainConfig {
     @Value("${rag.chunk-overlap}")
     private int chunkOverlap;
     
+    @Value("${rag.splitter.parallel}")
+    private boolean parallelSplitter;
+    
+    @Value("${rag.splitter.parallel-threshold-chars}")
+    private int parallelThresholdChars;
+    
     @Bean
     public ChatLanguageModel chatLanguageModel() {
         return OpenAiChatModel.builder()
+                .baseUrl(openaiBaseUrl)
                 .apiKey(openaiApiKey)
                 .modelName(chatModel)
                 .temperature(0.7)
@@ -45,6 +56,7 @@ public class LangChainConfig {
     @Bean
     public EmbeddingModel embeddingModel() {
         return OpenAiEmbeddingModel.builder()
+                .baseUrl(openaiBaseUrl)
                 .apiKey(openaiApiKey)
                 .modelName(embeddingModel)
                 .timeout(Duration.ofSeconds(60))
@@ -54,8 +66,9 @@ public class LangChainConfig {
     
     @Bean
     public DocumentSplitter documentSplitter() {
+        if (parallelSplitter) {
+            return new ParallelDocumentSplitter(chunkSize, chunkOverlap, parallelThresholdChars);
+        }
         return DocumentSplitters.recursive(chunkSize, chunkOverlap);
     }
-} {
-    
 }
@@ -12,16 +12,20 @@ import io.milvus.grpc.DataType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Configuration
+@ConditionalOnProperty(name = "milvus.enabled", havingValue = "true", matchIfMissing = true)
 public class MilvusConfig {
     
     private static final Logger logger = LoggerFactory.getLogger(MilvusConfig.class);
@@ -35,9 +39,24 @@ public class MilvusConfig {
     @Value("${milvus.collection.name}")
     private String collectionName;
     
+    @Value("${milvus.collection.search-names}")
+    private List<String> searchCollections;
+    
     @Value("${milvus.collection.dimension}")
     private int dimension;
     
+    @Value("${milvus.collection.index-type}")
+    private String indexType;
+    
+    @Value("${milvus.collection.pq-m}")
+    private int pqSubQuantizers;
+    
+    @Value("${rag.compression.enabled}")
+    private boolean compressionEnabled;
+    
+    @Value("${rag.compression.dimension}")
+    private int compressedDimension;
+    
     private MilvusServiceClient milvusClient;
     
     @Bean
@@ -56,22 +75,35 @@ public class MilvusConfig {
     
     @PostConstruct
     public void initializeCollection() {
+        // The write collection plus any others searched alongside it
+        Set<String> collections = new LinkedHashSet<>();
+        collections.add(collectionName);
+        collections.addAll(searchCollections);
+        
+        int storedDimension = compressionEnabled ? compressedDimension : dimension;
+        if (isProductQuantized() && storedDimension % pqSubQuantizers != 0) {
+            throw new IllegalStateException("Index type " + indexType + " needs the stored dimension ("
+                    + storedDimension + ") to be a multiple of milvus.collection.pq-m (" + pqSubQuantizers + ")");
+        }
+        
         try {
             MilvusServiceClient client = milvusClient();
             
-            // Check if collection exists
-            HasCollectionParam hasCollectionParam = HasCollectionParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .build();
-            
-            boolean exists = client.hasCollection(hasCollectionParam).getData();
-            
-            if (!exists) {
-                createCollection(client);
-                createIndex(client);
-                logger.info("Collection '{}' created successfully", collectionName);
-            } else {
-                logger.info("Collection '{}' already exists", collectionName);
+            for (String collection : collections) {
+                // Check if collection exists
+                HasCollectionParam hasCollectionParam = HasCollectionParam.newBuilder()
+                        .withCollectionName(collection)
+                        .build();
+                
+                boolean exists = client.hasCollection(hasCollectionParam).getData();
+                
+                if (!exists) {
+                    createCollection(client, collection);
+                    createIndex(client, collection);
+                    logger.info("Collection '{}' created successfully", collection);
+                } else {
+                    logger.info("Collection '{}' already exists", collection);
+                }
             }
         } catch (Exception e) {
             logger.error("Error initializing Milvus collection: ", e);
@@ -79,7 +111,7 @@ public class MilvusConfig {
         }
     }
     
-    private void createCollection(MilvusServiceClient client) {
+    private void createCollection(MilvusServiceClient client, String collection) {
         List<FieldType> fields = new ArrayList<>();
         
         // ID field
@@ -95,7 +127,8 @@ public class MilvusConfig {
         fields.add(FieldType.newBuilder()
                 .withName("embedding")
                 .withDataType(DataType.FloatVector)
-                .withDimension(dimension)
+                // Truncated vectors are stored when compression is on; full ones live in a local side file
+                .withDimension(compressionEnabled ? compressedDimension : dimension)
                 .build());
         
         // Text content field
@@ -113,7 +146,7 @@ public class MilvusConfig {
                 .build());
         
         CreateCollectionParam createCollectionParam = CreateCollectionParam.newBuilder()
-                .withCollectionName(collectionName)
+                .withCollectionName(collection)
                 .withDescription("Document embeddings for RAG")
                 .withShardsNum(2)
                 .withFieldTypes(fields)
@@ -123,20 +156,27 @@ public class MilvusConfig {
         client.createCollection(createCollectionParam);
     }
     
-    private void createIndex(MilvusServiceClient client) {
+    private void createIndex(MilvusServiceClient client, String collection) {
         Map<String, Object> indexParams = new HashMap<>();
         indexParams.put("nlist", 1024);
-        indexParams.put("m", 8);
-        indexParams.put("nbits", 8);
+        if (isProductQuantized()) {
+            // Each vector is split into m sub-vectors, each encoded in nbits bits
+            indexParams.put("m", pqSubQuantizers);
+            indexParams.put("nbits", 8);
+        }
         
         CreateIndexParam createIndexParam = CreateIndexParam.newBuilder()
-                .withCollectionName(collectionName)
+                .withCollectionName(collection)
                 .withFieldName("embedding")
-                .withIndexType(io.milvus.IndexType.IVF_FLAT)
+                .withIndexType(io.milvus.IndexType.valueOf(indexType))
                 .withMetricType(io.milvus.MetricType.COSINE)
                 .withExtraParam(indexParams)
                 .build();
         
         client.createIndex(createIndexParam);
     }
+    
+    private boolean isProductQuantized() {
+        return indexType.endsWith("_PQ");
+    }
 }
\ No newline at end of file
@@ -1,12 +1,15 @@
-package com.mohamed.langchain_milvus_ragcontroller;
+package com.mohamed.langchain_milvus_rag.controller;
 
-import com.example.rag.dto.ApiResponse;
-import com.example.rag.dto.DocumentRequest;
-import com.example.rag.dto.QuestionRequest;
-import com.example.rag.service.RAGService;
+import com.mohamed.langchain_milvus_rag.dto.ApiResponse;
+import com.mohamed.langchain_milvus_rag.dto.DocumentRequest;
+import com.mohamed.langchain_milvus_rag.dto.QuestionRequest;
+import com.mohamed.langchain_milvus_rag.entity.IngestionJob;
+import com.mohamed.langchain_milvus_rag.service.IngestionQueueService;
+import com.mohamed.langchain_milvus_rag.service.RAGService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -26,17 +29,23 @@ public class RAGController {
     @Autowired
     private RAGService ragService;
     
+    @Autowired
+    private IngestionQueueService ingestionQueueService;
+    
     @PostMapping("/ask")
     public ResponseEntity<ApiResponse<Map<String, String>>> askQuestion(
             @Valid @RequestBody QuestionRequest request) {
         try {
             logger.info("Received question: {}", request.getQuestion());
             
-            String answer = ragService.askQuestion(request.getQuestion());
+            String answer = ragService.askQuestion(request.getQuestion(), request.getSessionId());
             
             Map<String, String> response = new HashMap<>();
             response.put("question", request.getQuestion());
             response.put("answer", answer);
+            if (request.getSessionId() != null) {
+                response.put("sessionId", request.getSessionId());
+            }
             
             return ResponseEntity.ok(ApiResponse.success("Question answered successfully", response));
             
@@ -64,6 +73,36 @@ public class RAGController {
         }
     }
     
+    @PostMapping("/documents/async")
+    public ResponseEntity<ApiResponse<IngestionJob>> submitDocument(
+            @Valid @RequestBody DocumentRequest request) {
+        try {
+            logger.info("Received document to queue: {}", request);
+            
+            IngestionJob job = ingestionQueueService.submit(request.getContent(), request.getMetadata());
+            
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Document accepted for ingestion", job));
+            
+        } catch (IllegalStateException e) {
+            logger.warn("Rejected document, ingestion backlog full: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error queueing document: {}", request, e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Failed to queue document: " + e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ApiResponse<IngestionJob>> getJob(@PathVariable String jobId) {
+        return ingestionQueueService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(ApiResponse.success(job)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Unknown ingestion job: " + jobId)));
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<ApiResponse<Map<String, String>>> healthCheck() {
         Map<String, String> health = new HashMap<>();
@@ -10,6 +10,9 @@ public class QuestionRequest {
     @Size(max = 1000, message = "Question must not exceed 1000 characters")
     private String question;
     
+    @Size(max = 100, message = "Session id must not exceed 100 characters")
+    private String sessionId;
+    
     public QuestionRequest() {}
     
     public QuestionRequest(String question) {
@@ -24,10 +27,19 @@ public class QuestionRequest {
         this.question = question;
     }
     
+    public String getSessionId() {
+        return sessionId;
+    }
+    
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+    
     @Override
     public String toString() {
         return "QuestionRequest{" +
                 "question='" + question + '\'' +
+                ", sessionId='" + sessionId + '\'' +
                 '}';
     }
 }
\ No newline at end of file
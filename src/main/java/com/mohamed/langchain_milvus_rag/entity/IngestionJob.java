@@ -0,0 +1,94 @@
+package com.mohamed.langchain_milvus_rag.entity;
+
+
+import java.time.LocalDateTime;
+
+public class IngestionJob {
+
+    public enum Status {
+        QUEUED, PROCESSING, COMPLETED, FAILED
+    }
+
+    private String jobId;
+    private volatile Status status;
+    private volatile int segmentCount;
+    private volatile int attempts;
+    private volatile String error;
+    private LocalDateTime submittedAt;
+    private volatile LocalDateTime completedAt;
+
+    public IngestionJob() {}
+
+    public IngestionJob(String jobId) {
+        this.jobId = jobId;
+        this.status = Status.QUEUED;
+        this.submittedAt = LocalDateTime.now();
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public void setSegmentCount(int segmentCount) {
+        this.segmentCount = segmentCount;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(LocalDateTime submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionJob{" +
+                "jobId='" + jobId + '\'' +
+                ", status=" + status +
+                ", segmentCount=" + segmentCount +
+                ", attempts=" + attempts +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,177 @@
+package com.mohamed.langchain_milvus_rag.entity;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timings and intermediate results of a single question. Stage timings are in
+ * microseconds; a stage that did not run (e.g. the model call when nothing
+ * was retrieved) stays at zero.
+ */
+public class QueryTrace {
+
+    private String traceId;
+    private long timestamp;
+    private String question;
+    private long embeddingMicros;
+    private long searchMicros;
+    private long promptMicros;
+    private long modelMicros;
+    private long totalMicros;
+    private float[] queryEmbedding;
+    private List<String> documentIds = new ArrayList<>();
+    private List<Float> scores = new ArrayList<>();
+    private int promptChars;
+    private int topK;
+    private double threshold;
+    private String error;
+
+    public QueryTrace() {}
+
+    public QueryTrace(String traceId, String question) {
+        this.traceId = traceId;
+        this.question = question;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public void addHit(String documentId, double score) {
+        documentIds.add(documentId);
+        scores.add((float) score);
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public void setTraceId(String traceId) {
+        this.traceId = traceId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public void setQuestion(String question) {
+        this.question = question;
+    }
+
+    public long getEmbeddingMicros() {
+        return embeddingMicros;
+    }
+
+    public void setEmbeddingMicros(long embeddingMicros) {
+        this.embeddingMicros = embeddingMicros;
+    }
+
+    public long getSearchMicros() {
+        return searchMicros;
+    }
+
+    public void setSearchMicros(long searchMicros) {
+        this.searchMicros = searchMicros;
+    }
+
+    public long getPromptMicros() {
+        return promptMicros;
+    }
+
+    public void setPromptMicros(long promptMicros) {
+        this.promptMicros = promptMicros;
+    }
+
+    public long getModelMicros() {
+        return modelMicros;
+    }
+
+    public void setModelMicros(long modelMicros) {
+        this.modelMicros = modelMicros;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public void setTotalMicros(long totalMicros) {
+        this.totalMicros = totalMicros;
+    }
+
+    public float[] getQueryEmbedding() {
+        return queryEmbedding;
+    }
+
+    public void setQueryEmbedding(float[] queryEmbedding) {
+        this.queryEmbedding = queryEmbedding;
+    }
+
+    public List<String> getDocumentIds() {
+        return documentIds;
+    }
+
+    public void setDocumentIds(List<String> documentIds) {
+        this.documentIds = documentIds;
+    }
+
+    public List<Float> getScores() {
+        return scores;
+    }
+
+    public void setScores(List<Float> scores) {
+        this.scores = scores;
+    }
+
+    public int getPromptChars() {
+        return promptChars;
+    }
+
+    public void setPromptChars(int promptChars) {
+        this.promptChars = promptChars;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryTrace{" +
+                "traceId='" + traceId + '\'' +
+                ", totalMs=" + totalMicros / 1000 +
+                ", embeddingMs=" + embeddingMicros / 1000 +
+                ", searchMs=" + searchMicros / 1000 +
+                ", promptMs=" + promptMicros / 1000 +
+                ", modelMs=" + modelMicros / 1000 +
+                ", hits=" + documentIds.size() +
+                ", promptChars=" + promptChars +
+                (error != null ? ", error='" + error + '\'' : "") +
+                '}';
+    }
+}
@@ -0,0 +1,98 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scatter-gather search over {@code milvus.collection.search-names}. Each
+ * collection is searched in parallel with its own deadline and the hits are
+ * merged into a global top-K, so a query costs as much as the slowest shard
+ * rather than the sum of all of them. Shards that miss the deadline or fail are
+ * left out of the result; the query only fails if every shard does. The
+ * deadline is also set on the Milvus call itself, so a slow shard's search is
+ * cancelled rather than left holding a thread and a connection.
+ */
+@Service
+public class CollectionRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CollectionRouter.class);
+
+    @Autowired
+    private MilvusService milvusService;
+
+    @Value("${rag.search.shard-timeout-ms}")
+    private long shardTimeoutMillis;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public List<Document> search(List<Float> queryEmbedding) {
+        return search(queryEmbedding, milvusService.getSearchCollections(), milvusService.defaultSearchOptions());
+    }
+    
+    public List<Document> search(List<Float> queryEmbedding, List<String> collections, MilvusService.SearchOptions options) {
+        int maxResults = options.topK();
+        if (collections.size() == 1) {
+            return milvusService.searchSimilarDocuments(collections.get(0), queryEmbedding, options);
+        }
+
+        MilvusService.SearchOptions shardOptions = options.withTimeout(shardTimeoutMillis);
+        List<CompletableFuture<List<Document>>> futures = new ArrayList<>(collections.size());
+        for (String collection : collections) {
+            futures.add(CompletableFuture
+                    .supplyAsync(() -> milvusService.searchSimilarDocuments(collection, queryEmbedding, shardOptions), executor)
+                    .orTimeout(shardTimeoutMillis, TimeUnit.MILLISECONDS));
+        }
+
+        // Min-heap on score holding the best maxResults hits seen so far
+        PriorityQueue<Document> topK = new PriorityQueue<>(maxResults + 1, Comparator.comparingDouble(Document::getScore));
+        int failed = 0;
+        Throwable lastFailure = null;
+
+        for (int i = 0; i < futures.size(); i++) {
+            List<Document> hits;
+            try {
+                hits = futures.get(i).join();
+            } catch (Exception e) {
+                failed++;
+                lastFailure = e.getCause() != null ? e.getCause() : e;
+                logger.warn("Search on collection '{}' failed or exceeded {} ms, returning partial results: {}",
+                        collections.get(i), shardTimeoutMillis, lastFailure.toString());
+                continue;
+            }
+            for (Document hit : hits) {
+                if (topK.size() < maxResults) {
+                    topK.offer(hit);
+                } else if (hit.getScore() > topK.peek().getScore()) {
+                    topK.poll();
+                    topK.offer(hit);
+                }
+            }
+        }
+
+        if (failed == collections.size()) {
+            throw new RuntimeException("Search failed on all " + failed + " collections", lastFailure);
+        }
+
+        List<Document> merged = new ArrayList<>(topK);
+        merged.sort(Comparator.comparingDouble(Document::getScore).reversed());
+        logger.debug("Merged {} hits from {}/{} collections", merged.size(), collections.size() - failed, collections.size());
+        return merged;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
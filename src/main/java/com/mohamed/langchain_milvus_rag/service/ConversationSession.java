@@ -0,0 +1,170 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.Document;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Retrieved context and recent turns of one conversation.
+ *
+ * <p>Context chunks are kept in the order they were first retrieved and new
+ * ones are only ever appended, so the context section of the prompt is a
+ * stable prefix from turn to turn. The context is capped at
+ * {@code maxChunks}; when it overflows, the chunk that has gone longest
+ * without being among a turn's top hits is dropped. Chunk embeddings are kept
+ * so cached chunks can be scored against a follow-up without asking Milvus;
+ * hits that come back without one are not cached, so callers must still put
+ * the current turn's hits into the prompt themselves.</p>
+ *
+ * <p>Not thread-safe; hold {@link #lock()} for the whole turn.</p>
+ */
+public class ConversationSession {
+
+    public record Turn(String question, String answer) {}
+
+    private static class ContextChunk {
+        final Document document;
+        final float[] embedding;
+        int lastUsedTurn;
+
+        ContextChunk(Document document, float[] embedding, int lastUsedTurn) {
+            this.document = document;
+            this.embedding = embedding;
+            this.lastUsedTurn = lastUsedTurn;
+        }
+    }
+
+    private final String sessionId;
+    private final int maxChunks;
+    private final int maxTurns;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, ContextChunk> chunks = new LinkedHashMap<>();
+    private final Deque<Turn> turns = new ArrayDeque<>();
+    private int turnCount;
+    private volatile long lastAccess = System.currentTimeMillis();
+    private volatile long estimatedBytes;
+
+    public ConversationSession(String sessionId, int maxChunks, int maxTurns) {
+        this.sessionId = sessionId;
+        this.maxChunks = maxChunks;
+        this.maxTurns = maxTurns;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public ReentrantLock lock() {
+        return lock;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Rough heap footprint of the cached chunks and turns, for the store's memory budget.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public boolean isEmpty() {
+        return chunks.isEmpty() && turns.isEmpty();
+    }
+
+    public Set<String> contextIds() {
+        return new HashSet<>(chunks.keySet());
+    }
+
+    /**
+     * Cached chunks scoring at least {@code threshold} against the query, as
+     * copies carrying that score.
+     */
+    public List<Document> scoreContext(float[] query, double threshold) {
+        List<Document> hits = new ArrayList<>();
+        for (ContextChunk chunk : chunks.values()) {
+            double score = VectorMath.cosine(query, chunk.embedding);
+            if (score >= threshold) {
+                Document stored = chunk.document;
+                Document hit = new Document(stored.getId(), stored.getContent(), null, stored.getMetadata());
+                hit.setScore(score);
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Records the top hits of the current turn: cached ones are marked as used,
+     * new ones are appended to the context, then the context is trimmed.
+     * New hits without an embedding are not cached.
+     */
+    public void useHits(List<Document> hits) {
+        turnCount++;
+        for (Document hit : hits) {
+            ContextChunk cached = chunks.get(hit.getId());
+            if (cached != null) {
+                cached.lastUsedTurn = turnCount;
+            } else if (hit.getEmbedding() != null) {
+                Document stored = new Document(hit.getId(), hit.getContent(), null, hit.getMetadata());
+                chunks.put(hit.getId(), new ContextChunk(stored, VectorMath.toArray(hit.getEmbedding()), turnCount));
+            }
+        }
+
+        while (chunks.size() > maxChunks) {
+            // Least recently used; iteration order breaks ties towards the oldest chunk
+            String evict = null;
+            int oldest = Integer.MAX_VALUE;
+            for (Map.Entry<String, ContextChunk> entry : chunks.entrySet()) {
+                if (entry.getValue().lastUsedTurn < oldest) {
+                    oldest = entry.getValue().lastUsedTurn;
+                    evict = entry.getKey();
+                }
+            }
+            chunks.remove(evict);
+        }
+        updateEstimatedBytes();
+    }
+
+    /**
+     * Context chunks in prompt order, oldest first.
+     */
+    public List<Document> contextChunks() {
+        List<Document> documents = new ArrayList<>(chunks.size());
+        for (ContextChunk chunk : chunks.values()) {
+            documents.add(chunk.document);
+        }
+        return documents;
+    }
+
+    public void addTurn(String question, String answer) {
+        turns.addLast(new Turn(question, answer));
+        while (turns.size() > maxTurns) {
+            turns.removeFirst();
+        }
+        updateEstimatedBytes();
+    }
+
+    public List<Turn> recentTurns() {
+        return new ArrayList<>(turns);
+    }
+
+    private void updateEstimatedBytes() {
+        // Object headers and map entries are approximated by a flat per-entry overhead
+        long bytes = 0;
+        for (ContextChunk chunk : chunks.values()) {
+            bytes += 128 + (long) chunk.embedding.length * Float.BYTES + 2L * chunk.document.getContent().length();
+        }
+        for (Turn turn : turns) {
+            bytes += 64 + 2L * (turn.question().length() + turn.answer().length());
+        }
+        estimatedBytes = bytes;
+    }
+}
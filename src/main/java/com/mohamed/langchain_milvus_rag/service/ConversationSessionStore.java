@@ -0,0 +1,129 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory conversation sessions, keyed by the client-chosen session id.
+ * Holds at most {@code rag.session.max-sessions} sessions and roughly
+ * {@code rag.session.max-bytes} of cached chunks and turns, evicting the least
+ * recently used, and drops sessions idle for longer than
+ * {@code rag.session.ttl-minutes}, checked on every access and once a minute.
+ * Sessions are not persisted; after a restart a session starts empty.
+ */
+@Service
+public class ConversationSessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSessionStore.class);
+
+    @Value("${rag.session.max-sessions}")
+    private int maxSessions;
+
+    @Value("${rag.session.ttl-minutes}")
+    private long ttlMinutes;
+
+    @Value("${rag.session.max-context-chunks}")
+    private int maxContextChunks;
+
+    @Value("${rag.session.max-turns}")
+    private int maxTurns;
+
+    @Value("${rag.session.max-bytes}")
+    private long maxBytes;
+
+    private ScheduledExecutorService sweeper;
+
+    // Access order, so the eldest entry is always the least recently used session
+    private final LinkedHashMap<String, ConversationSession> sessions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConversationSession> eldest) {
+            return size() > maxSessions;
+        }
+    };
+
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+    }
+
+    public synchronized ConversationSession getOrCreate(String sessionId) {
+        expireIdle();
+        ConversationSession session = sessions.get(sessionId);
+        if (session == null) {
+            session = new ConversationSession(sessionId, maxContextChunks, maxTurns);
+            sessions.put(sessionId, session);
+            logger.debug("Started session {} ({} active)", sessionId, sessions.size());
+        }
+        session.touch();
+        trimToBudget(session);
+        return session;
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    private synchronized void sweep() {
+        expireIdle();
+        trimToBudget(null);
+    }
+
+    /**
+     * Evicts least recently used sessions, other than {@code keep}, until the
+     * estimated footprint fits the budget. A session grows during its turn, so
+     * the budget is enforced on the next access rather than exactly.
+     */
+    private void trimToBudget(ConversationSession keep) {
+        long total = 0;
+        for (ConversationSession session : sessions.values()) {
+            total += session.getEstimatedBytes();
+        }
+        Iterator<ConversationSession> iterator = sessions.values().iterator();
+        while (total > maxBytes && iterator.hasNext()) {
+            ConversationSession session = iterator.next();
+            if (session == keep) {
+                continue;
+            }
+            total -= session.getEstimatedBytes();
+            iterator.remove();
+            logger.debug("Evicted session {} to stay within {} bytes", session.getSessionId(), maxBytes);
+        }
+    }
+
+    private void expireIdle() {
+        long cutoff = System.currentTimeMillis() - ttlMinutes * 60_000;
+        Iterator<ConversationSession> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            ConversationSession session = iterator.next();
+            if (session.getLastAccess() >= cutoff) {
+                break;
+            }
+            iterator.remove();
+            logger.debug("Expired idle session {}", session.getSessionId());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory-mapped side file holding the full-precision embedding of every chunk,
+ * keyed by chunk id, for exact rescoring of candidates found in a compressed
+ * Milvus index.
+ *
+ * <p>The file is an array of fixed-size slots
+ * {@code [short idLength][id bytes, padded][float32 x dimension]}. The id length
+ * is written last, so a slot torn by a crash reads back as empty. The file is
+ * mapped in chunks of whole slots to stay under the 2 GB limit of a single
+ * mapping; the id-to-slot index is rebuilt by scanning the ids on startup.
+ * Writers call {@link #force()} before treating their rows as stored, since
+ * this file is the only full-precision copy of the vectors.</p>
+ */
+public class FullPrecisionVectorStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FullPrecisionVectorStore.class);
+
+    private static final int MAX_ID_BYTES = 64;
+    private static final long MAX_CHUNK_BYTES = 64L << 20;
+
+    private final int dimension;
+    private final int slotBytes;
+    private final int slotsPerChunk;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private int nextSlot;
+    // Slots written since the last force(), as an inclusive range
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private int dirtyTo = -1;
+
+    public FullPrecisionVectorStore(Path file, int dimension) throws IOException {
+        this.dimension = dimension;
+        this.slotBytes = Short.BYTES + MAX_ID_BYTES + dimension * Float.BYTES;
+        this.slotsPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / slotBytes);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // Pages reach disk in any order after a crash, so an empty slot can sit
+        // between written ones: skip it and append after the highest occupied slot
+        long existingSlots = channel.size() / slotBytes;
+        for (int slot = 0; slot < existingSlots; slot++) {
+            MappedByteBuffer chunk = chunkFor(slot);
+            int offset = offsetOf(slot);
+            int idLength = chunk.getShort(offset);
+            if (idLength <= 0 || idLength > MAX_ID_BYTES) {
+                continue;
+            }
+            byte[] id = new byte[idLength];
+            chunk.get(offset + Short.BYTES, id);
+            slots.put(new String(id, StandardCharsets.UTF_8), slot);
+            nextSlot = slot + 1;
+        }
+        logger.info("Opened full-precision vector store {} with {} vectors of dimension {}", file, slots.size(), dimension);
+    }
+
+    public synchronized void put(String id, List<Float> vector) {
+        if (vector.size() != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.size());
+        }
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Chunk id longer than " + MAX_ID_BYTES + " bytes: " + id);
+        }
+
+        Integer existing = slots.get(id);
+        int slot = existing != null ? existing : nextSlot++;
+        MappedByteBuffer chunk = chunkFor(slot);
+        int offset = offsetOf(slot);
+
+        int vectorOffset = offset + Short.BYTES + MAX_ID_BYTES;
+        for (int d = 0; d < dimension; d++) {
+            chunk.putFloat(vectorOffset + d * Float.BYTES, vector.get(d));
+        }
+        chunk.put(offset + Short.BYTES, idBytes);
+        chunk.putShort(offset, (short) idBytes.length);
+        slots.put(id, slot);
+        dirtyFrom = Math.min(dirtyFrom, slot);
+        dirtyTo = Math.max(dirtyTo, slot);
+    }
+
+    /**
+     * Flushes every slot written since the last call to disk.
+     */
+    public synchronized void force() {
+        if (dirtyTo < 0) {
+            return;
+        }
+        for (int index = dirtyFrom / slotsPerChunk; index <= dirtyTo / slotsPerChunk; index++) {
+            int first = Math.max(dirtyFrom, index * slotsPerChunk);
+            int last = Math.min(dirtyTo, (index + 1) * slotsPerChunk - 1);
+            chunkFor(first).force(offsetOf(first), (last - first + 1) * slotBytes);
+        }
+        dirtyFrom = Integer.MAX_VALUE;
+        dirtyTo = -1;
+    }
+
+    public boolean contains(String id) {
+        return slots.containsKey(id);
+    }
+
+    /**
+     * Exact cosine similarity between {@code query} and the stored vector,
+     * or {@code NaN} if the id is unknown.
+     */
+    public double cosine(String id, float[] query) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            return Double.NaN;
+        }
+        return VectorMath.cosine(query, read(slot));
+    }
+
+    public List<Float> get(String id) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            return null;
+        }
+        float[] stored = read(slot);
+        List<Float> vector = new ArrayList<>(dimension);
+        for (float value : stored) {
+            vector.add(value);
+        }
+        return vector;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public long fileBytes() throws IOException {
+        return channel.size();
+    }
+
+    private float[] read(int slot) {
+        float[] vector = new float[dimension];
+        chunkFor(slot).slice(offsetOf(slot) + Short.BYTES + MAX_ID_BYTES, dimension * Float.BYTES)
+                .asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private int offsetOf(int slot) {
+        return (slot % slotsPerChunk) * slotBytes;
+    }
+
+    private MappedByteBuffer chunkFor(int slot) {
+        int index = slot / slotsPerChunk;
+        synchronized (chunks) {
+            while (chunks.size() <= index) {
+                try {
+                    // Mapping past the end of the file grows it
+                    chunks.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                            (long) chunks.size() * slotsPerChunk * slotBytes, (long) slotsPerChunk * slotBytes));
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to map vector store chunk " + chunks.size(), e);
+                }
+            }
+            return chunks.get(index);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (chunks) {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,319 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of accepted ingestion requests.
+ *
+ * <p>Entries are written to fixed-size segment files named after the first
+ * sequence they hold. Each record is {@code [int length][int crc][long sequence][payload]};
+ * the length is written last so a torn write reads back as the end of the segment.
+ * Acknowledged sequences go to a small side file, and a checkpoint records the
+ * highest sequence below which everything is acknowledged. Segments entirely
+ * below the checkpoint are deleted.</p>
+ *
+ * <p>Segments stay mapped while they are on disk and only the position of each
+ * unacknowledged record is kept on the heap; payloads are read back from the
+ * mapping with {@link #read(long)} when they are processed.</p>
+ */
+public class IngestionLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionLog.class);
+
+    private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String ACK_FILE = "acks.log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    public record Entry(long sequence, byte[] payload) {}
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean fsync;
+
+    // first sequence of each segment on disk -> segment file
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    // acknowledged sequences above the checkpoint
+    private final TreeSet<Long> acknowledged = new TreeSet<>();
+    // first sequence of each segment on disk -> its mapping
+    private final Map<Long, MappedByteBuffer> mappings = new HashMap<>();
+    // unacknowledged sequence -> record offset within its segment
+    private final Map<Long, Integer> offsets = new HashMap<>();
+    private final List<Long> recovered = new ArrayList<>();
+
+    private long nextSequence = 1;
+    private long checkpoint;
+    private MappedByteBuffer active;
+    private FileChannel ackChannel;
+
+    public IngestionLog(Path directory, int segmentBytes, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        open();
+    }
+
+    /**
+     * Sequences found on disk at startup that were never acknowledged, in order.
+     */
+    public synchronized List<Long> recoveredSequences() {
+        return List.copyOf(recovered);
+    }
+
+    /**
+     * Reads back an unacknowledged entry, checking its CRC again.
+     */
+    public synchronized Entry read(long sequence) throws IOException {
+        Integer offset = offsets.get(sequence);
+        if (offset == null) {
+            throw new IllegalArgumentException("Sequence " + sequence + " is not pending in the ingestion log");
+        }
+        ByteBuffer buffer = mappings.get(segments.floorKey(sequence)).duplicate();
+        buffer.position(offset);
+        int length = buffer.getInt();
+        int expectedCrc = buffer.getInt();
+        long stored = buffer.getLong();
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if (stored != sequence || (int) crc.getValue() != expectedCrc) {
+            throw new IOException("Corrupt record " + sequence + " in " + segments.floorEntry(sequence).getValue());
+        }
+        return new Entry(sequence, payload);
+    }
+
+    /**
+     * Appends a payload and returns its sequence. The entry is durable once this returns
+     * when fsync is enabled, otherwise once the OS flushes the mapped pages.
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (recordBytes + Integer.BYTES > segmentBytes) {
+            throw new IllegalArgumentException("Entry of " + payload.length + " bytes exceeds segment size " + segmentBytes);
+        }
+        // keep room for a zero length marker after the record
+        if (active == null || active.remaining() < recordBytes + Integer.BYTES) {
+            roll();
+        }
+
+        long sequence = nextSequence++;
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        int start = active.position();
+        active.position(start + Integer.BYTES);
+        active.putInt((int) crc.getValue());
+        active.putLong(sequence);
+        active.put(payload);
+        active.putInt(start, payload.length);
+        if (fsync) {
+            active.force(start, recordBytes);
+        }
+        offsets.put(sequence, start);
+        return sequence;
+    }
+
+    /**
+     * Marks entries as applied. They will not be replayed after a restart.
+     */
+    public synchronized void acknowledge(Collection<Long> sequences) throws IOException {
+        if (sequences.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(sequences.size() * Long.BYTES);
+        for (long sequence : sequences) {
+            buffer.putLong(sequence);
+            acknowledged.add(sequence);
+            offsets.remove(sequence);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            ackChannel.write(buffer);
+        }
+        if (fsync) {
+            ackChannel.force(false);
+        }
+        advanceCheckpoint();
+    }
+
+    public synchronized long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public synchronized int pendingCount() {
+        return (int) (nextSequence - 1 - checkpoint - acknowledged.size());
+    }
+
+    private void open() throws IOException {
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpointFile)) {
+            checkpoint = Long.parseLong(Files.readString(checkpointFile).trim());
+        }
+
+        Path ackFile = directory.resolve(ACK_FILE);
+        if (Files.exists(ackFile)) {
+            ByteBuffer acks = ByteBuffer.wrap(Files.readAllBytes(ackFile));
+            while (acks.remaining() >= Long.BYTES) {
+                long sequence = acks.getLong();
+                if (sequence > checkpoint) {
+                    acknowledged.add(sequence);
+                }
+            }
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .forEach(p -> segments.put(firstSequenceOf(p), p));
+        }
+
+        long lastSequence = checkpoint;
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            lastSequence = Math.max(lastSequence, readSegment(segment.getKey(), segment.getValue()));
+        }
+        nextSequence = lastSequence + 1;
+
+        ackChannel = openAckChannel();
+        advanceCheckpoint();
+
+        logger.info("Opened ingestion log at {}: checkpoint={}, next sequence={}, {} entries to replay",
+                directory, checkpoint, nextSequence, recovered.size());
+    }
+
+    private long readSegment(long firstSequence, Path segment) throws IOException {
+        long lastSequence = 0;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mappings.put(firstSequence, buffer);
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining() - Integer.BYTES - Long.BYTES) {
+                    break;
+                }
+                int expectedCrc = buffer.getInt();
+                long sequence = buffer.getLong();
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    logger.warn("Corrupt record {} in {}, ignoring the rest of the segment", sequence, segment);
+                    break;
+                }
+
+                lastSequence = sequence;
+                if (sequence > checkpoint && !acknowledged.contains(sequence)) {
+                    recovered.add(sequence);
+                    offsets.put(sequence, start);
+                }
+            }
+        }
+        return lastSequence;
+    }
+
+    private void roll() throws IOException {
+        // Always start a fresh segment rather than appending after a possibly torn tail.
+        // A file with this name can only be left over from a crash before its first record
+        // was complete: any valid record in it would have moved nextSequence past its name.
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        if (Files.exists(segment)) {
+            logger.warn("Reusing {} left without valid records by an interrupted write", segment);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segments.put(nextSequence, segment);
+        mappings.put(nextSequence, active);
+        logger.debug("Rolled ingestion log to {}", segment);
+    }
+
+    private void advanceCheckpoint() throws IOException {
+        long previous = checkpoint;
+        while (acknowledged.remove(checkpoint + 1)) {
+            checkpoint++;
+        }
+        if (checkpoint == previous) {
+            return;
+        }
+
+        // Checkpoint first: if the ack rewrite is lost, the old acks below it are simply ignored
+        replaceAtomically(directory.resolve(CHECKPOINT_FILE),
+                ByteBuffer.wrap(Long.toString(checkpoint).getBytes(StandardCharsets.US_ASCII)));
+
+        // Rewrite the ack file with only what is still above the checkpoint
+        ByteBuffer remaining = ByteBuffer.allocate(acknowledged.size() * Long.BYTES);
+        acknowledged.forEach(remaining::putLong);
+        remaining.flip();
+        ackChannel.close();
+        replaceAtomically(directory.resolve(ACK_FILE), remaining);
+        ackChannel = openAckChannel();
+
+        // A segment can go once the next one starts at or below checkpoint + 1
+        Iterator<Map.Entry<Long, Path>> it = segments.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Path> current = it.next();
+            Long nextStart = segments.higherKey(current.getKey());
+            if (nextStart == null || nextStart > checkpoint + 1) {
+                break;
+            }
+            Files.deleteIfExists(current.getValue());
+            mappings.remove(current.getKey());
+            it.remove();
+        }
+    }
+
+    /**
+     * Writes {@code contents} to a temp file, forces it to disk and renames it over
+     * {@code target}, so a crash leaves either the old or the new file, never a partial one.
+     */
+    private void replaceAtomically(Path target, ByteBuffer contents) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private FileChannel openAckChannel() throws IOException {
+        return FileChannel.open(directory.resolve(ACK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.force();
+        }
+        if (ackChannel != null) {
+            ackChannel.close();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.Document;
+import com.mohamed.langchain_milvus_rag.entity.IngestionJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accept-fast document ingestion. Requests are appended to the
+ * {@link IngestionLog} and acknowledged with a job id; worker threads drain
+ * the log in batches, split and embed the documents, insert them into Milvus
+ * with a single call and only then acknowledge the log entries. Anything not
+ * acknowledged when the process stops is replayed on the next start. Only
+ * sequence numbers are queued in memory; workers read each document back from
+ * the log when they pick it up.
+ *
+ * <p>Failed entries are handed to a scheduler that puts them back on the queue
+ * after a backoff, so workers never sleep. Entries that were already embedded
+ * keep their segments and only retry the insert, as long as the retained
+ * segments fit in {@code rag.ingestion.max-retained-bytes}; beyond that they
+ * are prepared again from the log.</p>
+ *
+ * <p>With {@code rag.ingestion.enabled=false} (set automatically for the
+ * one-shot commands) the log is not opened and submissions are rejected.</p>
+ */
+@Service
+public class IngestionQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionQueueService.class);
+
+    @Autowired
+    private RAGService ragService;
+
+    @Autowired
+    private MilvusService milvusService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${rag.ingestion.enabled}")
+    private boolean enabled;
+
+    @Value("${rag.ingestion.log-dir}")
+    private String logDir;
+
+    @Value("${rag.ingestion.segment-bytes}")
+    private int segmentBytes;
+
+    @Value("${rag.ingestion.fsync}")
+    private boolean fsync;
+
+    @Value("${rag.ingestion.workers}")
+    private int workers;
+
+    @Value("${rag.ingestion.batch-size}")
+    private int batchSize;
+
+    @Value("${rag.ingestion.max-pending}")
+    private int maxPending;
+
+    @Value("${rag.ingestion.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${rag.ingestion.job-retention}")
+    private int jobRetention;
+
+    @Value("${rag.ingestion.max-retained-bytes}")
+    private long maxRetainedBytes;
+
+    /**
+     * Serialized form of an accepted request in the log. The job id also seeds the
+     * segment ids, so replaying an entry whose insert already landed overwrites it.
+     */
+    public record IngestionRecord(String jobId, String content, Map<String, String> metadata) {}
+
+    /** A queued entry; the document itself stays in the log until a worker reads it. */
+    private record PendingEntry(long sequence, String jobId) {}
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final Queue<String> finishedJobs = new ConcurrentLinkedQueue<>();
+    // Segments of entries waiting to retry their insert, keyed by sequence
+    private final Map<Long, List<Document>> retained = new ConcurrentHashMap<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private BlockingQueue<PendingEntry> queue;
+    private IngestionLog ingestionLog;
+    private ExecutorService executor;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        queue = new LinkedBlockingQueue<>();
+        if (!enabled) {
+            logger.info("Background ingestion is disabled; the ingestion log at {} is left untouched", logDir);
+            return;
+        }
+        ingestionLog = new IngestionLog(Paths.get(logDir), segmentBytes, fsync);
+
+        for (long sequence : ingestionLog.recoveredSequences()) {
+            IngestionRecord record = readRecord(sequence);
+            jobs.put(record.jobId(), new IngestionJob(record.jobId()));
+            queue.add(new PendingEntry(sequence, record.jobId()));
+        }
+        if (!queue.isEmpty()) {
+            logger.info("Replaying {} unacknowledged ingestion entries", queue.size());
+        }
+
+        running = true;
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ingestion-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "ingestion-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.submit(this::drain);
+        }
+    }
+
+    /**
+     * Durably records the document and returns immediately with its job.
+     *
+     * @throws IllegalStateException if the backlog is full or ingestion is disabled
+     */
+    public IngestionJob submit(String content, Map<String, String> metadata) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Background ingestion is disabled");
+        }
+        if (queue.size() >= maxPending) {
+            throw new IllegalStateException("Ingestion backlog is full (" + maxPending + " pending documents)");
+        }
+
+        IngestionRecord record = new IngestionRecord(UUID.randomUUID().toString(), content, metadata);
+        IngestionJob job = new IngestionJob(record.jobId());
+        jobs.put(job.getJobId(), job);
+
+        long sequence;
+        try {
+            sequence = ingestionLog.append(objectMapper.writeValueAsBytes(record));
+        } catch (IOException | RuntimeException e) {
+            jobs.remove(job.getJobId());
+            throw e;
+        }
+        queue.add(new PendingEntry(sequence, record.jobId()));
+        logger.debug("Accepted ingestion job {} at sequence {}", job.getJobId(), sequence);
+        return job;
+    }
+
+    public Optional<IngestionJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void drain() {
+        List<PendingEntry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingEntry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // process() settles its own failures; this only keeps the worker alive
+                logger.error("Unexpected error in ingestion worker: ", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<PendingEntry> batch) {
+        // Entries without an outcome yet; if anything unexpected fails, these are retried
+        Set<PendingEntry> unsettled = new LinkedHashSet<>(batch);
+        try {
+            Map<PendingEntry, List<Document>> prepared = new LinkedHashMap<>();
+            List<Document> documents = new ArrayList<>();
+
+            for (PendingEntry entry : batch) {
+                IngestionJob job = jobs.get(entry.jobId());
+                job.setStatus(IngestionJob.Status.PROCESSING);
+                List<Document> segments = release(entry.sequence());
+                if (segments == null) {
+                    try {
+                        IngestionRecord record = readRecord(entry.sequence());
+                        segments = ragService.prepareDocuments(record.jobId(), record.content(), record.metadata());
+                    } catch (Exception e) {
+                        // Reading, splitting or embedding failed for this document only; retry it on its own
+                        unsettled.remove(entry);
+                        retryOrFail(entry, null, e);
+                        continue;
+                    }
+                }
+                job.setSegmentCount(segments.size());
+                documents.addAll(segments);
+                prepared.put(entry, segments);
+            }
+            if (prepared.isEmpty()) {
+                return;
+            }
+
+            try {
+                milvusService.insertDocuments(documents);
+            } catch (Exception e) {
+                for (Map.Entry<PendingEntry, List<Document>> entry : prepared.entrySet()) {
+                    unsettled.remove(entry.getKey());
+                    retryOrFail(entry.getKey(), entry.getValue(), e);
+                }
+                return;
+            }
+
+            List<Long> sequences = new ArrayList<>(prepared.size());
+            for (PendingEntry entry : prepared.keySet()) {
+                sequences.add(entry.sequence());
+            }
+            ingestionLog.acknowledge(sequences);
+            for (PendingEntry entry : prepared.keySet()) {
+                unsettled.remove(entry);
+                finish(jobs.get(entry.jobId()), IngestionJob.Status.COMPLETED, null);
+            }
+            logger.info("Ingested batch of {} documents ({} segments)", prepared.size(), documents.size());
+        } catch (Exception e) {
+            logger.error("Unexpected error in ingestion worker, retrying {} entries: ", unsettled.size(), e);
+            for (PendingEntry entry : unsettled) {
+                retryOrFail(entry, null, e);
+            }
+        }
+    }
+
+    private IngestionRecord readRecord(long sequence) throws IOException {
+        return objectMapper.readValue(ingestionLog.read(sequence).payload(), IngestionRecord.class);
+    }
+
+    /**
+     * Schedules another attempt, keeping {@code segments} (if any) for it, or
+     * fails the job once it has used up its attempts. Never throws, so one entry
+     * cannot take the rest of its batch down with it.
+     */
+    private void retryOrFail(PendingEntry entry, List<Document> segments, Exception cause) {
+        IngestionJob job = jobs.get(entry.jobId());
+        job.setAttempts(job.getAttempts() + 1);
+        if (job.getAttempts() < maxAttempts) {
+            long backoff = Math.min(30_000L, 500L << job.getAttempts());
+            logger.warn("Ingestion job {} failed (attempt {}/{}), retrying in {} ms: {}",
+                    job.getJobId(), job.getAttempts(), maxAttempts, backoff, cause.getMessage());
+            job.setStatus(IngestionJob.Status.QUEUED);
+            retain(entry.sequence(), segments);
+            try {
+                retryScheduler.schedule(() -> queue.add(entry), backoff, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the entry is still unacknowledged and will be replayed on restart
+                release(entry.sequence());
+                logger.debug("Not scheduling retry of job {} during shutdown", job.getJobId());
+            }
+            return;
+        }
+
+        logger.error("Ingestion job {} failed after {} attempts: ", job.getJobId(), job.getAttempts(), cause);
+        finish(job, IngestionJob.Status.FAILED, cause.getMessage());
+        try {
+            // A document that keeps failing must not block the checkpoint forever
+            ingestionLog.acknowledge(List.of(entry.sequence()));
+        } catch (IOException e) {
+            logger.error("Could not acknowledge failed ingestion job {}, it will be replayed on restart: ",
+                    job.getJobId(), e);
+        }
+    }
+
+    private void retain(long sequence, List<Document> segments) {
+        if (segments == null) {
+            return;
+        }
+        long bytes = estimateBytes(segments);
+        if (retainedBytes.addAndGet(bytes) > maxRetainedBytes) {
+            // Over budget: the retry splits and embeds the document again
+            retainedBytes.addAndGet(-bytes);
+            return;
+        }
+        retained.put(sequence, segments);
+    }
+
+    private List<Document> release(long sequence) {
+        List<Document> segments = retained.remove(sequence);
+        if (segments != null) {
+            retainedBytes.addAndGet(-estimateBytes(segments));
+        }
+        return segments;
+    }
+
+    private static long estimateBytes(List<Document> segments) {
+        // A boxed Float plus its reference is about 20 bytes; object overhead is approximated per segment
+        long bytes = 0;
+        for (Document segment : segments) {
+            bytes += 256 + 2L * segment.getContent().length() + 20L * segment.getEmbedding().size();
+        }
+        return bytes;
+    }
+
+    private void finish(IngestionJob job, IngestionJob.Status status, String error) {
+        job.setError(error);
+        job.setCompletedAt(LocalDateTime.now());
+        job.setStatus(status);
+
+        finishedJobs.add(job.getJobId());
+        while (finishedJobs.size() > jobRetention) {
+            String evicted = finishedJobs.poll();
+            if (evicted != null) {
+                jobs.remove(evicted);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        if (retryScheduler != null) {
+            retryScheduler.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdown();
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Ingestion workers still busy after 30 s, interrupting them");
+                executor.shutdownNow();
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    // Closing under a running worker would fail its ack; unacknowledged entries replay anyway
+                    logger.error("Ingestion workers did not stop, leaving the ingestion log open");
+                    return;
+                }
+            }
+        }
+        if (ingestionLog != null) {
+            ingestionLog.close();
+        }
+    }
+}
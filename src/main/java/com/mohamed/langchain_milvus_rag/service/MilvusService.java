@@ -4,10 +4,16 @@ package com.mohamed.langchain_milvus_rag.service;
 import com.mohamed.langchain_milvus_rag.entity.Document;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.milvus.client.MilvusClient;
+import io.grpc.Status;
 import io.milvus.client.MilvusServiceClient;
+import io.milvus.param.R;
 import io.milvus.param.collection.LoadCollectionParam;
 import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.QueryParam;
 import io.milvus.param.dml.SearchParam;
+import io.milvus.param.dml.UpsertParam;
+import io.milvus.response.QueryResultsWrapper;
 import io.milvus.response.SearchResultsWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +23,7 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,29 +37,54 @@ public class MilvusService {
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private VectorCompression vectorCompression;
+    
     @Value("${milvus.collection.name}")
     private String collectionName;
     
+    @Value("${milvus.collection.search-names}")
+    private List<String> searchCollections;
+    
     @Value("${rag.max-results}")
     private int maxResults;
     
     @Value("${rag.similarity-threshold}")
     private double similarityThreshold;
     
+    @Value("${rag.search.nprobe}")
+    private int nprobe;
+    
+    @Value("${rag.search.range-search}")
+    private boolean rangeSearch;
+    
+    @Value("${rag.search.two-phase-fetch}")
+    private boolean twoPhaseFetch;
+    
     @PostConstruct
     public void loadCollection() {
-        try {
-            LoadCollectionParam loadCollectionParam = LoadCollectionParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .build();
-            
-            milvusClient.loadCollection(loadCollectionParam);
-            logger.info("Collection '{}' loaded successfully", collectionName);
-        } catch (Exception e) {
-            logger.error("Error loading collection: ", e);
+        for (String collection : searchCollections) {
+            try {
+                LoadCollectionParam loadCollectionParam = LoadCollectionParam.newBuilder()
+                        .withCollectionName(collection)
+                        .build();
+                
+                milvusClient.loadCollection(loadCollectionParam);
+                logger.info("Collection '{}' loaded successfully", collection);
+            } catch (Exception e) {
+                logger.error("Error loading collection '{}': ", collection, e);
+            }
         }
     }
     
+    public String getCollectionName() {
+        return collectionName;
+    }
+    
+    public List<String> getSearchCollections() {
+        return searchCollections;
+    }
+    
     public void insertDocument(Document document) {
         try {
             List<String> ids = Arrays.asList(document.getId());
@@ -60,18 +92,7 @@ public class MilvusService {
             List<String> contents = Arrays.asList(document.getContent());
             List<String> metadata = Arrays.asList(objectMapper.writeValueAsString(document.getMetadata()));
             
-            List<InsertParam.Field> fields = new ArrayList<>();
-            fields.add(new InsertParam.Field("id", ids));
-            fields.add(new InsertParam.Field("embedding", embeddings));
-            fields.add(new InsertParam.Field("content", contents));
-            fields.add(new InsertParam.Field("metadata", metadata));
-            
-            InsertParam insertParam = InsertParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withFields(fields)
-                    .build();
-            
-            milvusClient.insert(insertParam);
+            insertRows(new RowBatch(ids, embeddings, contents, metadata));
             logger.debug("Document inserted successfully: {}", document.getId());
         } catch (Exception e) {
             logger.error("Error inserting document: ", e);
@@ -93,18 +114,7 @@ public class MilvusService {
                 }
             }).collect(Collectors.toList());
             
-            List<InsertParam.Field> fields = new ArrayList<>();
-            fields.add(new InsertParam.Field("id", ids));
-            fields.add(new InsertParam.Field("embedding", embeddings));
-            fields.add(new InsertParam.Field("content", contents));
-            fields.add(new InsertParam.Field("metadata", metadata));
-            
-            InsertParam insertParam = InsertParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withFields(fields)
-                    .build();
-            
-            milvusClient.insert(insertParam);
+            insertRows(new RowBatch(ids, embeddings, contents, metadata));
             logger.info("Batch inserted {} documents successfully", documents.size());
         } catch (Exception e) {
             logger.error("Error inserting documents batch: ", e);
@@ -112,53 +122,332 @@ public class MilvusService {
         }
     }
     
+    // Column-oriented rows as stored in the collection; metadata is the raw JSON string
+    public record RowBatch(List<String> ids, List<List<Float>> embeddings, List<String> contents, List<String> metadata) {
+        public int size() {
+            return ids.size();
+        }
+    }
+    
+    // Upsert, not insert: Milvus does not deduplicate ids, and replays and re-imports must replace rows
+    public void insertRows(RowBatch rows) {
+        List<List<Float>> embeddings = rows.embeddings();
+        if (vectorCompression.isEnabled()) {
+            // Full-precision vectors go to the side file, Milvus gets the truncated ones
+            FullPrecisionVectorStore vectorStore = vectorCompression.getVectorStore();
+            embeddings = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                vectorStore.put(rows.ids().get(i), rows.embeddings().get(i));
+                embeddings.add(vectorCompression.compress(rows.embeddings().get(i)));
+            }
+            // Durable before Milvus (and the ingestion log) treat the rows as stored
+            vectorStore.force();
+        }
+        
+        List<InsertParam.Field> fields = new ArrayList<>();
+        fields.add(new InsertParam.Field("id", rows.ids()));
+        fields.add(new InsertParam.Field("embedding", embeddings));
+        fields.add(new InsertParam.Field("content", rows.contents()));
+        fields.add(new InsertParam.Field("metadata", rows.metadata()));
+        
+        UpsertParam upsertParam = UpsertParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFields(fields)
+                .build();
+        
+        dataOf(milvusClient.upsert(upsertParam), "upsert");
+    }
+    
+    // One page of rows after afterId in id order, with full-precision embeddings
+    @SuppressWarnings("unchecked")
+    public RowBatch queryRowsAfter(String afterId, int limit) {
+        QueryParam queryParam = QueryParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withExpr("id > " + quote(afterId))
+                .withOutFields(vectorCompression.isEnabled()
+                        ? Arrays.asList("id", "content", "metadata")
+                        : Arrays.asList("id", "embedding", "content", "metadata"))
+                .withLimit((long) limit)
+                .build();
+        
+        QueryResultsWrapper results = new QueryResultsWrapper(dataOf(milvusClient.query(queryParam), "query"));
+        List<String> ids = new ArrayList<>();
+        if (results.getRowCount() == 0) {
+            return new RowBatch(ids, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+        
+        List<?> idData = results.getFieldWrapper("id").getFieldData();
+        List<?> embeddingData = vectorCompression.isEnabled()
+                ? null
+                : results.getFieldWrapper("embedding").getFieldData();
+        List<?> contentData = results.getFieldWrapper("content").getFieldData();
+        List<?> metadataData = results.getFieldWrapper("metadata").getFieldData();
+        
+        // The next page starts after the largest id, so rows must come out sorted
+        Integer[] order = new Integer[idData.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(i -> (String) idData.get(i)));
+        
+        List<List<Float>> embeddings = new ArrayList<>(order.length);
+        List<String> contents = new ArrayList<>(order.length);
+        List<String> metadata = new ArrayList<>(order.length);
+        for (int i : order) {
+            String id = (String) idData.get(i);
+            ids.add(id);
+            embeddings.add(vectorCompression.isEnabled()
+                    ? fullPrecisionVector(id)
+                    : (List<Float>) embeddingData.get(i));
+            contents.add((String) contentData.get(i));
+            metadata.add((String) metadataData.get(i));
+        }
+        return new RowBatch(ids, embeddings, contents, metadata);
+    }
+    
     public List<Document> searchSimilarDocuments(List<Float> queryEmbedding) {
+        return searchSimilarDocuments(collectionName, queryEmbedding);
+    }
+    
+    public List<Document> searchSimilarDocuments(String collection, List<Float> queryEmbedding) {
+        return searchSimilarDocuments(collection, queryEmbedding, defaultSearchOptions());
+    }
+    
+    // A positive timeoutMillis becomes the gRPC deadline of the search and its follow-up fetch
+    public record SearchOptions(int topK, double threshold, int nprobe, Set<String> excludeIds, boolean withVectors,
+                                long timeoutMillis) {
+        
+        public SearchOptions(int topK, double threshold, int nprobe) {
+            this(topK, threshold, nprobe, Set.of(), false);
+        }
+        
+        public SearchOptions(int topK, double threshold, int nprobe, Set<String> excludeIds, boolean withVectors) {
+            this(topK, threshold, nprobe, excludeIds, withVectors, 0);
+        }
+        
+        public SearchOptions withTimeout(long timeoutMillis) {
+            return new SearchOptions(topK, threshold, nprobe, excludeIds, withVectors, timeoutMillis);
+        }
+    }
+    
+    public SearchOptions defaultSearchOptions() {
+        return new SearchOptions(maxResults, similarityThreshold, nprobe);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public List<Document> searchSimilarDocuments(String collection, List<Float> queryEmbedding, SearchOptions options) {
+        int maxResults = options.topK();
+        double similarityThreshold = options.threshold();
+        long deadline = System.currentTimeMillis() + options.timeoutMillis();
         try {
-            List<String> searchOutputFields = Arrays.asList("id", "content", "metadata");
-            List<List<Float>> searchVectors = Arrays.asList(queryEmbedding);
+            // Compressed scores are only approximate: over-fetch and rescore before thresholding.
+            // Only the write collection has full-precision vectors in the side file; other
+            // collections are scored on their compressed vectors and return no embeddings
+            boolean compressed = vectorCompression.isEnabled();
+            boolean rescore = compressed && collection.equals(collectionName);
+            boolean idsOnly = twoPhaseFetch || rescore;
+            
+            // In two-phase mode only ids and scores come back from the search
+            List<String> searchOutputFields = new ArrayList<>(idsOnly
+                    ? Arrays.asList("id")
+                    : Arrays.asList("id", "content", "metadata"));
+            if (options.withVectors() && !compressed) {
+                searchOutputFields.add("embedding");
+            }
+            List<List<Float>> searchVectors = Arrays.asList(vectorCompression.compress(queryEmbedding));
             
             SearchParam searchParam = SearchParam.newBuilder()
-                    .withCollectionName(collectionName)
+                    .withCollectionName(collection)
                     .withMetricType(io.milvus.grpc.MetricType.COSINE)
                     .withOutFields(searchOutputFields)
-                    .withTopK(maxResults)
+                    .withTopK(rescore ? maxResults * vectorCompression.getOversample() : maxResults)
                     .withVectors(searchVectors)
                     .withVectorFieldName("embedding")
-                    .withParams("{\"nprobe\":10}")
+                    .withExpr(excludeExpr(options.excludeIds()))
+                    .withParams(searchParams(rescore
+                            ? similarityThreshold - vectorCompression.getScoreMargin()
+                            : similarityThreshold, options.nprobe()))
                     .build();
             
             SearchResultsWrapper searchResults = new SearchResultsWrapper(
-                    milvusClient.search(searchParam).getData().getResults());
+                    dataOf(clientWithin(options, deadline).search(searchParam), "search").getResults());
+            List<SearchResultsWrapper.IDScore> idScores = searchResults.getIDScore(0);
             
             List<Document> documents = new ArrayList<>();
-            for (int i = 0; i < searchResults.getIDScore(0).size(); i++) {
-                float score = searchResults.getIDScore(0).get(i).getScore();
-                
-                // Apply similarity threshold
-                if (score >= similarityThreshold) {
-                    String id = searchResults.getIDScore(0).get(i).getStrID();
-                    String content = (String) searchResults.getFieldWrapper("content").getFieldData().get(i);
-                    String metadataJson = (String) searchResults.getFieldWrapper("metadata").getFieldData().get(i);
-                    
-                    Map<String, String> metadata = new HashMap<>();
-                    try {
-                        metadata = objectMapper.readValue(metadataJson, Map.class);
-                    } catch (JsonProcessingException e) {
-                        logger.warn("Error deserializing metadata for document {}: ", id, e);
+            if (idScores.isEmpty()) {
+                logger.debug("No documents with score >= {}", similarityThreshold);
+                return documents;
+            }
+
+            if (idsOnly) {
+                List<String> ids = new ArrayList<>();
+                Map<String, Double> scores = new HashMap<>();
+                if (rescore) {
+                    float[] query = new float[queryEmbedding.size()];
+                    for (int d = 0; d < query.length; d++) {
+                        query[d] = queryEmbedding.get(d);
+                    }
+                    FullPrecisionVectorStore vectorStore = vectorCompression.getVectorStore();
+                    for (SearchResultsWrapper.IDScore idScore : idScores) {
+                        double exact = vectorStore.cosine(idScore.getStrID(), query);
+                        if (Double.isNaN(exact)) {
+                            logger.warn("No full-precision vector for {}, using compressed score", idScore.getStrID());
+                            exact = idScore.getScore();
+                        }
+                        if (exact >= similarityThreshold) {
+                            ids.add(idScore.getStrID());
+                            scores.put(idScore.getStrID(), exact);
+                        }
+                    }
+                    ids.sort(Comparator.comparing((String id) -> scores.get(id)).reversed());
+                    if (ids.size() > maxResults) {
+                        ids = new ArrayList<>(ids.subList(0, maxResults));
+                    }
+                } else {
+                    for (SearchResultsWrapper.IDScore idScore : idScores) {
+                        if (idScore.getScore() >= (float) similarityThreshold) {
+                            ids.add(idScore.getStrID());
+                            scores.put(idScore.getStrID(), (double) idScore.getScore());
+                        }
                     }
+                }
+                Map<String, Document> fetched = fetchDocuments(clientWithin(options, deadline), collection, ids,
+                        options.withVectors() && !compressed);
+                for (String id : ids) {
+                    Document document = fetched.get(id);
+                    if (document != null) {
+                        document.setScore(scores.get(id));
+                        if (options.withVectors() && rescore) {
+                            document.setEmbedding(vectorCompression.getVectorStore().get(id));
+                        }
+                        documents.add(document);
+                    }
+                }
+            } else {
+                List<?> contents = searchResults.getFieldWrapper("content").getFieldData();
+                List<?> metadataJsons = searchResults.getFieldWrapper("metadata").getFieldData();
+                List<?> embeddings = options.withVectors() && !compressed
+                        ? searchResults.getFieldWrapper("embedding").getFieldData()
+                        : null;
+                for (int i = 0; i < idScores.size(); i++) {
+                    float score = idScores.get(i).getScore();
                     
-                    Document document = new Document(id, content, null, metadata);
-                    document.setScore(score);
-                    documents.add(document);
+                    // Range search already enforces this server-side; kept for the top-K-only mode.
+                    // Scores are float32, so compare against the threshold as a float like the radius
+                    if (score >= (float) similarityThreshold) {
+                        String id = idScores.get(i).getStrID();
+                        Document document = new Document(id, (String) contents.get(i),
+                                embeddings != null ? (List<Float>) embeddings.get(i) : null,
+                                parseMetadata(id, (String) metadataJsons.get(i)));
+                        document.setScore(score);
+                        documents.add(document);
+                    }
                 }
             }
             
-            logger.debug("Found {} similar documents with score >= {}", documents.size(), similarityThreshold);
+            logger.debug("Found {} similar documents in '{}' with score >= {}", documents.size(), collection, similarityThreshold);
             return documents;
             
         } catch (Exception e) {
-            logger.error("Error searching similar documents: ", e);
-            throw new RuntimeException("Failed to search similar documents", e);
+            if (Status.fromThrowable(e).getCode() == Status.Code.DEADLINE_EXCEEDED) {
+                // An expected outcome of a search timeout, not a fault: no stack trace
+                logger.warn("Search in '{}' exceeded its deadline: {}", collection, e.getMessage());
+            } else {
+                logger.error("Error searching similar documents: ", e);
+            }
+            throw new RuntimeException("Failed to search similar documents in '" + collection + "': " + e.getMessage(), e);
+        }
+    }
+    
+    // COSINE range search keeps score > radius, so one ulp below the threshold keeps score == threshold
+    private String searchParams(double threshold, int nprobe) {
+        if (!rangeSearch) {
+            return "{\"nprobe\":" + nprobe + "}";
+        }
+        float radius = Math.nextDown((float) threshold);
+        return "{\"nprobe\":" + nprobe + ",\"radius\":" + radius + "}";
+    }
+    
+    // Second phase of a two-phase search: content and metadata for the ids that passed the threshold
+    @SuppressWarnings("unchecked")
+    private Map<String, Document> fetchDocuments(MilvusClient client, String collection, List<String> ids, boolean withVectors) {
+        Map<String, Document> documents = new HashMap<>();
+        if (ids.isEmpty()) {
+            return documents;
+        }
+        
+        String expr = ids.stream()
+                .map(MilvusService::quote)
+                .collect(Collectors.joining(",", "id in [", "]"));
+        
+        QueryParam queryParam = QueryParam.newBuilder()
+                .withCollectionName(collection)
+                .withExpr(expr)
+                .withOutFields(withVectors
+                        ? Arrays.asList("id", "content", "metadata", "embedding")
+                        : Arrays.asList("id", "content", "metadata"))
+                .build();
+        
+        QueryResultsWrapper queryResults = new QueryResultsWrapper(dataOf(client.query(queryParam), "query"));
+        List<?> resultIds = queryResults.getFieldWrapper("id").getFieldData();
+        List<?> contents = queryResults.getFieldWrapper("content").getFieldData();
+        List<?> metadataJsons = queryResults.getFieldWrapper("metadata").getFieldData();
+        List<?> embeddings = withVectors ? queryResults.getFieldWrapper("embedding").getFieldData() : null;
+        
+        for (int i = 0; i < resultIds.size(); i++) {
+            String id = (String) resultIds.get(i);
+            documents.put(id, new Document(id, (String) contents.get(i),
+                    embeddings != null ? (List<Float>) embeddings.get(i) : null,
+                    parseMetadata(id, (String) metadataJsons.get(i))));
+        }
+        return documents;
+    }
+    
+    // The SDK reports failures, deadlines included, in R rather than throwing; data is null unless it succeeded
+    private static <T> T dataOf(R<T> response, String operation) {
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            throw new RuntimeException("Milvus " + operation + " failed: " + response.getMessage(), response.getException());
+        }
+        return response.getData();
+    }
+    
+    private List<Float> fullPrecisionVector(String id) {
+        List<Float> vector = vectorCompression.getVectorStore().get(id);
+        if (vector == null) {
+            throw new IllegalStateException("No full-precision vector stored for " + id);
+        }
+        return vector;
+    }
+    
+    // Client with a gRPC deadline of whatever is left until deadline, if the search has a timeout
+    private MilvusClient clientWithin(SearchOptions options, long deadline) {
+        if (options.timeoutMillis() <= 0) {
+            return milvusClient;
+        }
+        long remaining = Math.max(1, deadline - System.currentTimeMillis());
+        return milvusClient.withTimeout(remaining, TimeUnit.MILLISECONDS);
+    }
+    
+    private static String excludeExpr(Set<String> excludeIds) {
+        if (excludeIds.isEmpty()) {
+            return "";
+        }
+        return excludeIds.stream()
+                .map(MilvusService::quote)
+                .collect(Collectors.joining(",", "id not in [", "]"));
+    }
+    
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, String> parseMetadata(String id, String metadataJson) {
+        try {
+            return objectMapper.readValue(metadataJson, Map.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Error deserializing metadata for document {}: ", id, e);
+            return new HashMap<>();
         }
     }
 }
\ No newline at end of file
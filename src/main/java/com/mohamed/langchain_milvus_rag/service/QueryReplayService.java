@@ -0,0 +1,78 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.Document;
+import com.mohamed.langchain_milvus_rag.entity.QueryTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Re-runs captured {@link QueryTrace}s against the current vector store with
+ * chosen search settings. The models are stubbed: the captured query embedding
+ * is searched directly instead of re-embedding the question, and the prompt is
+ * built to measure its size but never sent.
+ */
+@Service
+public class QueryReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryReplayService.class);
+
+    @Autowired
+    private CollectionRouter collectionRouter;
+
+    @Autowired
+    private RAGService ragService;
+
+    /**
+     * Outcome of one replayed trace. {@code overlap} is the fraction of the
+     * captured hits found again, or {@code NaN} if the trace had none.
+     */
+    public record ReplayResult(QueryTrace captured, long searchMicros, List<Document> hits, int promptChars, double overlap) {}
+
+    public List<ReplayResult> replay(List<QueryTrace> traces, List<String> collections,
+                                     MilvusService.SearchOptions options, int runs) {
+        List<ReplayResult> results = new ArrayList<>(traces.size());
+        for (QueryTrace trace : traces) {
+            if (trace.getQueryEmbedding() == null || trace.getQueryEmbedding().length == 0) {
+                logger.warn("Trace {} has no query embedding, skipping", trace.getTraceId());
+                continue;
+            }
+            List<Float> query = new ArrayList<>(trace.getQueryEmbedding().length);
+            for (float value : trace.getQueryEmbedding()) {
+                query.add(value);
+            }
+
+            // Median of several runs so one cold cache miss doesn't decide the result
+            long[] timings = new long[Math.max(1, runs)];
+            List<Document> hits = List.of();
+            for (int run = 0; run < timings.length; run++) {
+                long start = System.nanoTime();
+                hits = collectionRouter.search(query, collections, options);
+                timings[run] = (System.nanoTime() - start) / 1000;
+            }
+            Arrays.sort(timings);
+
+            int promptChars = hits.isEmpty() ? 0 : ragService.buildPrompt(trace.getQuestion(), hits).length();
+            results.add(new ReplayResult(trace, timings[timings.length / 2], hits, promptChars, overlap(trace, hits)));
+        }
+        return results;
+    }
+
+    private static double overlap(QueryTrace trace, List<Document> hits) {
+        if (trace.getDocumentIds().isEmpty()) {
+            return Double.NaN;
+        }
+        Set<String> captured = new HashSet<>(trace.getDocumentIds());
+        int found = 0;
+        for (Document hit : hits) {
+            if (captured.contains(hit.getId())) {
+                found++;
+            }
+        }
+        return (double) found / captured.size();
+    }
+}
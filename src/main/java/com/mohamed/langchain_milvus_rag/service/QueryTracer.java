@@ -0,0 +1,77 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.QueryTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Receives a {@link QueryTrace} for every question. All traces are logged at
+ * DEBUG; those slower than {@code rag.tracing.slow-query-ms} are logged at WARN
+ * and appended to the {@link SlowQueryLog} for offline replay.
+ */
+@Service
+public class QueryTracer {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryTracer.class);
+
+    @Value("${rag.tracing.enabled}")
+    private boolean enabled;
+
+    @Value("${rag.tracing.slow-query-ms}")
+    private long slowQueryMillis;
+
+    @Value("${rag.tracing.slow-log-dir}")
+    private String slowLogDir;
+
+    @Value("${rag.tracing.max-file-bytes}")
+    private long maxFileBytes;
+
+    @Value("${rag.tracing.max-files}")
+    private int maxFiles;
+
+    private SlowQueryLog slowQueryLog;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (enabled) {
+            slowQueryLog = new SlowQueryLog(Paths.get(slowLogDir), maxFileBytes, maxFiles);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(QueryTrace trace) {
+        if (!enabled) {
+            return;
+        }
+        if (trace.getTotalMicros() < slowQueryMillis * 1000) {
+            logger.debug("{}", trace);
+            return;
+        }
+
+        logger.warn("Slow question: {}", trace);
+        try {
+            slowQueryLog.append(trace);
+        } catch (IOException e) {
+            // Losing a trace must not fail the question it describes
+            logger.error("Failed to write slow-query log: ", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (slowQueryLog != null) {
+            slowQueryLog.close();
+        }
+    }
+}
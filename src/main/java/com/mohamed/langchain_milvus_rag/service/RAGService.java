@@ -2,6 +2,8 @@ package com.mohamed.langchain_milvus_rag.service;
 
 
 import com.mohamed.langchain_milvus_rag.entity.Document;
+import com.mohamed.langchain_milvus_rag.entity.QueryTrace;
+import com.mohamed.langchain_milvus_rag.splitter.SegmentMetadata;
 import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.parser.TextDocumentParser;
 import dev.langchain4j.data.embedding.Embedding;
@@ -26,6 +28,9 @@ public class RAGService {
     @Autowired
     private MilvusService milvusService;
     
+    @Autowired
+    private CollectionRouter collectionRouter;
+    
     @Autowired
     private ChatLanguageModel chatLanguageModel;
     
@@ -35,6 +40,12 @@ public class RAGService {
     @Autowired
     private DocumentSplitter documentSplitter;
     
+    @Autowired
+    private QueryTracer queryTracer;
+    
+    @Autowired
+    private ConversationSessionStore sessionStore;
+    
     private final PromptTemplate RAG_PROMPT_TEMPLATE = PromptTemplate.from("""
             You are a helpful assistant that answers questions based on the provided context.
             Use only the information from the context to answer the question.
@@ -48,77 +59,192 @@ public class RAGService {
             Answer:
             """);
     
+    // Context comes first and only grows at its end, so successive turns share a prompt prefix
+    private final PromptTemplate SESSION_PROMPT_TEMPLATE = PromptTemplate.from("""
+            You are a helpful assistant that answers questions based on the provided context.
+            Use only the information from the context to answer the question.
+            If the context doesn't contain enough information to answer the question, say so.
+            
+            Context:
+            {{context}}
+            
+            Conversation so far:
+            {{history}}
+            
+            Question: {{question}}
+            
+            Answer:
+            """);
+    
     public String askQuestion(String question) {
+        return askQuestion(question, null);
+    }
+    
+    /**
+     * Answers a question, as a follow-up in the given session when
+     * {@code sessionId} is set. Follow-ups reuse the session's retrieved chunks
+     * and only search Milvus for chunks not already in its context.
+     */
+    public String askQuestion(String question, String sessionId) {
+        ConversationSession session = sessionId == null || sessionId.isBlank()
+                ? null
+                : sessionStore.getOrCreate(sessionId);
+        if (session == null) {
+            return answer(question, null);
+        }
+        // One turn at a time per session, so follow-ups see the previous answer
+        session.lock().lock();
+        try {
+            return answer(question, session);
+        } finally {
+            session.lock().unlock();
+        }
+    }
+    
+    private String answer(String question, ConversationSession session) {
+        QueryTrace trace = new QueryTrace(UUID.randomUUID().toString(), question);
+        MilvusService.SearchOptions searchOptions = milvusService.defaultSearchOptions();
+        trace.setTopK(searchOptions.topK());
+        trace.setThreshold(searchOptions.threshold());
+        long start = System.nanoTime();
         try {
             logger.info("Processing question: {}", question);
             
             // Generate embedding for the question
+            long stageStart = System.nanoTime();
             Embedding questionEmbedding = embeddingModel.embed(question).content();
             List<Float> questionVector = questionEmbedding.vector();
+            trace.setEmbeddingMicros(micros(stageStart));
+            float[] questionArray = queryTracer.isEnabled() || session != null ? VectorMath.toArray(questionVector) : null;
+            if (queryTracer.isEnabled()) {
+                trace.setQueryEmbedding(questionArray);
+            }
             
             // Search for relevant documents
-            List<Document> relevantDocuments = milvusService.searchSimilarDocuments(questionVector);
+            stageStart = System.nanoTime();
+            List<Document> relevantDocuments = session == null
+                    ? collectionRouter.search(questionVector)
+                    : searchWithSession(session, questionVector, questionArray, searchOptions);
+            trace.setSearchMicros(micros(stageStart));
+            for (Document document : relevantDocuments) {
+                trace.addHit(document.getId(), document.getScore());
+            }
             
-            if (relevantDocuments.isEmpty()) {
+            // A follow-up may have nothing new to retrieve but still be answerable from the session
+            if (relevantDocuments.isEmpty() && (session == null || session.isEmpty())) {
                 logger.info("No relevant documents found for question: {}", question);
                 return "I couldn't find any relevant information to answer your question.";
             }
             
-            // Combine relevant document contents as context
-            String context = relevantDocuments.stream()
-                    .map(doc -> doc.getContent() + " (Score: " + String.format("%.3f", doc.getScore()) + ")")
-                    .collect(Collectors.joining("\n\n"));
-            
             logger.debug("Found {} relevant documents for context", relevantDocuments.size());
             
             // Create prompt with context and question
-            Map<String, Object> variables = new HashMap<>();
-            variables.put("context", context);
-            variables.put("question", question);
-            
-            Prompt prompt = RAG_PROMPT_TEMPLATE.apply(variables);
+            stageStart = System.nanoTime();
+            String prompt = session == null
+                    ? buildPrompt(question, relevantDocuments)
+                    : buildSessionPrompt(question, session, relevantDocuments);
+            trace.setPromptMicros(micros(stageStart));
+            trace.setPromptChars(prompt.length());
             
             // Generate response using the chat model
-            String response = chatLanguageModel.generate(prompt.text());
+            stageStart = System.nanoTime();
+            String response = chatLanguageModel.generate(prompt);
+            trace.setModelMicros(micros(stageStart));
+            
+            if (session != null) {
+                session.addTurn(question, response);
+            }
             
             logger.info("Generated response for question: {}", question);
             return response;
             
         } catch (Exception e) {
+            trace.setError(e.toString());
             logger.error("Error processing question: {}", question, e);
             throw new RuntimeException("Failed to process question", e);
+        } finally {
+            trace.setTotalMicros(micros(start));
+            queryTracer.record(trace);
         }
     }
     
+    /**
+     * The prompt sent to the chat model for a question and its retrieved documents.
+     */
+    public String buildPrompt(String question, List<Document> relevantDocuments) {
+        // Combine relevant document contents as context
+        String context = relevantDocuments.stream()
+                .map(doc -> doc.getContent() + " (Score: " + String.format("%.3f", doc.getScore()) + ")")
+                .collect(Collectors.joining("\n\n"));
+        
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("context", context);
+        variables.put("question", question);
+        
+        Prompt prompt = RAG_PROMPT_TEMPLATE.apply(variables);
+        return prompt.text();
+    }
+    
+    /**
+     * Top-K over the session's cached chunks and a Milvus search that excludes
+     * them. New chunks that make the top-K join the session's context.
+     */
+    private List<Document> searchWithSession(ConversationSession session, List<Float> questionVector,
+                                             float[] questionArray, MilvusService.SearchOptions defaults) {
+        List<Document> candidates = new ArrayList<>(session.scoreContext(questionArray, defaults.threshold()));
+        
+        MilvusService.SearchOptions options = new MilvusService.SearchOptions(
+                defaults.topK(), defaults.threshold(), defaults.nprobe(), session.contextIds(), true);
+        candidates.addAll(collectionRouter.search(questionVector, milvusService.getSearchCollections(), options));
+        
+        candidates.sort(Comparator.comparingDouble(Document::getScore).reversed());
+        List<Document> topK = new ArrayList<>(candidates.subList(0, Math.min(defaults.topK(), candidates.size())));
+        session.useHits(topK);
+        logger.debug("Session {}: {} hits, {} chunks in context", session.getSessionId(), topK.size(),
+                session.contextChunks().size());
+        return topK;
+    }
+    
+    /**
+     * The prompt for a follow-up: the whole session context in retrieval order,
+     * without per-turn scores so it stays byte-identical across turns, then any
+     * of this turn's hits the session could not cache, the recent turns and the
+     * question.
+     */
+    public String buildSessionPrompt(String question, ConversationSession session, List<Document> relevantDocuments) {
+        List<Document> chunks = new ArrayList<>(session.contextChunks());
+        Set<String> included = new HashSet<>();
+        chunks.forEach(chunk -> included.add(chunk.getId()));
+        for (Document hit : relevantDocuments) {
+            if (included.add(hit.getId())) {
+                chunks.add(hit);
+            }
+        }
+        String context = chunks.stream()
+                .map(Document::getContent)
+                .collect(Collectors.joining("\n\n"));
+        
+        String history = session.recentTurns().stream()
+                .map(turn -> "User: " + turn.question() + "\nAssistant: " + turn.answer())
+                .collect(Collectors.joining("\n\n"));
+        
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("context", context);
+        variables.put("history", history.isEmpty() ? "(none)" : history);
+        variables.put("question", question);
+        
+        return SESSION_PROMPT_TEMPLATE.apply(variables).text();
+    }
+    
+    private static long micros(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+    
     public void addDocument(String content, Map<String, String> metadata) {
         try {
             logger.info("Adding document with {} characters", content.length());
             
-            // Parse and split document
-            dev.langchain4j.data.document.Document langchainDoc = 
-                    new TextDocumentParser().parse(content);
-            
-            List<TextSegment> segments = documentSplitter.split(langchainDoc);
-            
-            List<Document> documents = new ArrayList<>();
-            
-            for (int i = 0; i < segments.size(); i++) {
-                TextSegment segment = segments.get(i);
-                String segmentId = UUID.randomUUID().toString();
-                
-                // Generate embedding for segment
-                Embedding embedding = embeddingModel.embed(segment.text()).content();
-                List<Float> embeddingVector = embedding.vector();
-                
-                // Create metadata for segment
-                Map<String, String> segmentMetadata = new HashMap<>(metadata);
-                segmentMetadata.put("segment_index", String.valueOf(i));
-                segmentMetadata.put("total_segments", String.valueOf(segments.size()));
-                segmentMetadata.put("content_length", String.valueOf(segment.text().length()));
-                
-                Document document = new Document(segmentId, segment.text(), embeddingVector, segmentMetadata);
-                documents.add(document);
-            }
+            List<Document> documents = prepareDocuments(UUID.randomUUID().toString(), content, metadata);
             
             // Insert documents into Milvus
             milvusService.insertDocuments(documents);
@@ -131,6 +257,41 @@ public class RAGService {
         }
     }
     
+    /**
+     * Splits a document and embeds its segments without storing them, so
+     * callers can batch several documents into one Milvus insert. Segment ids
+     * are {@code documentId-index}, so preparing the same document again yields
+     * the same ids and re-inserting it replaces rather than duplicates it.
+     */
+    public List<Document> prepareDocuments(String documentId, String content, Map<String, String> metadata) {
+        // Parse and split document
+        dev.langchain4j.data.document.Document langchainDoc = 
+                new TextDocumentParser().parse(content);
+        
+        List<TextSegment> segments = documentSplitter.split(langchainDoc);
+        
+        List<Document> documents = new ArrayList<>(segments.size());
+        Map<String, String> parentMetadata = SegmentMetadata.freeze(metadata);
+        
+        for (int i = 0; i < segments.size(); i++) {
+            TextSegment segment = segments.get(i);
+            String segmentId = documentId + "-" + i;
+            
+            // Generate embedding for segment
+            Embedding embedding = embeddingModel.embed(segment.text()).content();
+            List<Float> embeddingVector = embedding.vector();
+            
+            // Segment metadata shares the parent map instead of copying it
+            Map<String, String> segmentMetadata = new SegmentMetadata(
+                    parentMetadata, i, segments.size(), segment.text().length());
+            
+            Document document = new Document(segmentId, segment.text(), embeddingVector, segmentMetadata);
+            documents.add(document);
+        }
+        
+        return documents;
+    }
+    
     public void addDocuments(List<String> contents, List<Map<String, String>> metadataList) {
         if (contents.size() != metadataList.size()) {
             throw new IllegalArgumentException("Contents and metadata lists must have the same size");
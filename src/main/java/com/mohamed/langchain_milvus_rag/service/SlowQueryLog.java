@@ -0,0 +1,306 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.QueryTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Rotating binary log of slow {@link QueryTrace}s, kept small enough to leave
+ * on in production and read back by the replay tool.
+ *
+ * <pre>
+ * header : "RAGSLOW" version(byte)
+ * record*: length(int) crc(int) payload
+ * payload: traceId timestamp(long) question
+ *          embeddingMicros searchMicros promptMicros modelMicros totalMicros (long)
+ *          promptChars(int) topK(int) threshold(double) error
+ *          dimension(int) embedding[dimension float32]
+ *          hits(int) (documentId score(float))[hits]
+ * </pre>
+ *
+ * Strings are {@code length(int) utf8-bytes}, with -1 for null; numbers are
+ * big-endian. The active file is {@code slow-queries.log}; once it passes
+ * {@code maxFileBytes} it becomes {@code slow-queries.1.log}, older files shift
+ * up by one and anything beyond {@code maxFiles} is deleted. A record cut short
+ * by a crash, or any length that does not fit what is left of the file or
+ * record, ends the file when reading; reopening the log for appending cuts
+ * the active file back to its last valid record so new records stay readable.
+ */
+public class SlowQueryLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final byte[] MAGIC = "RAGSLOW".getBytes(StandardCharsets.US_ASCII);
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = MAGIC.length + 1;
+    private static final String PREFIX = "slow-queries";
+    private static final String SUFFIX = ".log";
+    private static final int MAX_RECORD_BYTES = 16 << 20;
+
+    /** The traces of a file and the length of the prefix they were read from. */
+    private record Scan(List<QueryTrace> traces, long validBytes) {}
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    private OutputStream out;
+    private long fileBytes;
+
+    public SlowQueryLog(Path directory, long maxFileBytes, int maxFiles) throws IOException {
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        Files.createDirectories(directory);
+        openActive();
+    }
+
+    public synchronized void append(QueryTrace trace) throws IOException {
+        byte[] payload = encode(trace);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        out.write(record.array());
+        out.flush();
+        fileBytes += record.capacity();
+
+        if (fileBytes >= maxFileBytes) {
+            rotate();
+        }
+    }
+
+    /**
+     * Reads every trace in a log file, or in all log files of a directory from
+     * oldest to newest.
+     */
+    public static List<QueryTrace> read(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return readFile(path);
+        }
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; ; i++) {
+            Path rotated = path.resolve(PREFIX + "." + i + SUFFIX);
+            if (!Files.exists(rotated)) {
+                break;
+            }
+            files.add(0, rotated);
+        }
+        Path active = path.resolve(PREFIX + SUFFIX);
+        if (Files.exists(active)) {
+            files.add(active);
+        }
+
+        List<QueryTrace> traces = new ArrayList<>();
+        for (Path file : files) {
+            traces.addAll(readFile(file));
+        }
+        return traces;
+    }
+
+    private static List<QueryTrace> readFile(Path file) throws IOException {
+        return scan(file).traces();
+    }
+
+    private static Scan scan(Path file) throws IOException {
+        List<QueryTrace> traces = new ArrayList<>();
+        long validBytes = HEADER_BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a slow-query log: " + file);
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported slow-query log version " + version + " in " + file);
+            }
+
+            long remaining = Files.size(file) - HEADER_BYTES;
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int expectedCrc = in.readInt();
+                remaining -= 2 * Integer.BYTES;
+                // Check before allocating: a torn length can be negative or absurdly large
+                if (length < 0 || length > MAX_RECORD_BYTES || length > remaining) {
+                    logger.warn("Invalid record length {} in {} after {} traces, ignoring the rest", length, file, traces.size());
+                    break;
+                }
+                byte[] payload = in.readNBytes(length);
+                remaining -= length;
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (payload.length != length || (int) crc.getValue() != expectedCrc) {
+                    logger.warn("Truncated or corrupt record in {} after {} traces, ignoring the rest", file, traces.size());
+                    break;
+                }
+                try {
+                    traces.add(decode(payload));
+                } catch (IOException e) {
+                    logger.warn("Undecodable record in {} after {} traces, ignoring the rest: {}", file, traces.size(), e.getMessage());
+                    break;
+                }
+                validBytes += 2 * Integer.BYTES + length;
+            }
+        } catch (EOFException e) {
+            logger.warn("Truncated record in {} after {} traces, ignoring the rest", file, traces.size());
+        }
+        return new Scan(traces, validBytes);
+    }
+
+    private void openActive() throws IOException {
+        Path active = directory.resolve(PREFIX + SUFFIX);
+        long size = Files.exists(active) ? Files.size(active) : 0;
+        // Anything after the last valid record would hide every record appended behind it,
+        // and a header cut short by a crash is written again
+        long validBytes = size < HEADER_BYTES ? 0 : scan(active).validBytes();
+        if (validBytes < size) {
+            logger.warn("Truncating {} from {} to {} bytes, after its last valid record", active, size, validBytes);
+            try (FileChannel channel = FileChannel.open(active, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+        out = new BufferedOutputStream(new FileOutputStream(active.toFile(), true));
+        if (validBytes == 0) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.flush();
+        }
+        fileBytes = Files.size(active);
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        Files.deleteIfExists(directory.resolve(PREFIX + "." + maxFiles + SUFFIX));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path from = directory.resolve(PREFIX + "." + i + SUFFIX);
+            if (Files.exists(from)) {
+                Files.move(from, directory.resolve(PREFIX + "." + (i + 1) + SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles >= 1) {
+            Files.move(directory.resolve(PREFIX + SUFFIX), directory.resolve(PREFIX + ".1" + SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(directory.resolve(PREFIX + SUFFIX));
+        }
+        openActive();
+        logger.debug("Rotated slow-query log in {}", directory);
+    }
+
+    private static byte[] encode(QueryTrace trace) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream data = new DataOutputStream(bytes);
+        writeString(data, trace.getTraceId());
+        data.writeLong(trace.getTimestamp());
+        writeString(data, trace.getQuestion());
+        data.writeLong(trace.getEmbeddingMicros());
+        data.writeLong(trace.getSearchMicros());
+        data.writeLong(trace.getPromptMicros());
+        data.writeLong(trace.getModelMicros());
+        data.writeLong(trace.getTotalMicros());
+        data.writeInt(trace.getPromptChars());
+        data.writeInt(trace.getTopK());
+        data.writeDouble(trace.getThreshold());
+        writeString(data, trace.getError());
+
+        float[] embedding = trace.getQueryEmbedding() != null ? trace.getQueryEmbedding() : new float[0];
+        data.writeInt(embedding.length);
+        ByteBuffer vector = ByteBuffer.allocate(embedding.length * Float.BYTES);
+        vector.asFloatBuffer().put(embedding);
+        data.write(vector.array());
+
+        data.writeInt(trace.getDocumentIds().size());
+        for (int i = 0; i < trace.getDocumentIds().size(); i++) {
+            writeString(data, trace.getDocumentIds().get(i));
+            data.writeFloat(trace.getScores().get(i));
+        }
+        data.flush();
+        return bytes.toByteArray();
+    }
+
+    private static QueryTrace decode(byte[] payload) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        QueryTrace trace = new QueryTrace();
+        trace.setTraceId(readString(data));
+        trace.setTimestamp(data.readLong());
+        trace.setQuestion(readString(data));
+        trace.setEmbeddingMicros(data.readLong());
+        trace.setSearchMicros(data.readLong());
+        trace.setPromptMicros(data.readLong());
+        trace.setModelMicros(data.readLong());
+        trace.setTotalMicros(data.readLong());
+        trace.setPromptChars(data.readInt());
+        trace.setTopK(data.readInt());
+        trace.setThreshold(data.readDouble());
+        trace.setError(readString(data));
+
+        float[] embedding = new float[readLength(data, Float.BYTES)];
+        ByteBuffer.wrap(data.readNBytes(embedding.length * Float.BYTES)).asFloatBuffer().get(embedding);
+        trace.setQueryEmbedding(embedding);
+
+        // Each hit is at least an empty id length plus a score
+        int hits = readLength(data, Integer.BYTES + Float.BYTES);
+        for (int i = 0; i < hits; i++) {
+            trace.addHit(readString(data), data.readFloat());
+        }
+        return trace;
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        if (value == null) {
+            data.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > data.available()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        return new String(data.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an element count and checks that that many elements of at least
+     * {@code elementBytes} each fit in the rest of the payload.
+     */
+    private static int readLength(DataInputStream data, int elementBytes) throws IOException {
+        int count = data.readInt();
+        if (count < 0 || (long) count * elementBytes > data.available()) {
+            throw new IOException("Invalid element count " + count);
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,257 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Columnar binary snapshot of the vector collection.
+ *
+ * <pre>
+ * header : "RAGSNAP" version(byte) dimension(int)
+ * block* : rows(int) ids[rows] vectors[rows * dimension float32] contents[rows] metadata[rows] crc(int)
+ * footer : 0(int) totalRows(long)
+ * </pre>
+ *
+ * Strings are {@code length(int) utf8-bytes}. All numbers are big-endian.
+ * Each block's vectors are one contiguous float array, so a block can be
+ * read back with a single bulk copy. The CRC covers the block from its row
+ * count on; version 1 files have no block CRCs. The footer is only written by
+ * {@link Writer#finish()}, so a file abandoned part-way fails to read.
+ */
+public final class SnapshotFile {
+
+    private static final byte[] MAGIC = "RAGSNAP".getBytes(StandardCharsets.US_ASCII);
+    private static final byte VERSION = 2;
+
+    private SnapshotFile() {}
+
+    public static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final CRC32 crc = new CRC32();
+        private final int dimension;
+        private long totalRows;
+
+        public Writer(OutputStream stream, int dimension) throws IOException {
+            this.out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(stream, 1 << 20), crc));
+            this.dimension = dimension;
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(dimension);
+        }
+
+        public void writeBlock(MilvusService.RowBatch rows) throws IOException {
+            if (rows.size() == 0) {
+                return;
+            }
+            crc.reset();
+            out.writeInt(rows.size());
+            for (String id : rows.ids()) {
+                writeString(id);
+            }
+
+            ByteBuffer vectors = ByteBuffer.allocate(rows.size() * dimension * Float.BYTES);
+            FloatBuffer floats = vectors.asFloatBuffer();
+            for (List<Float> embedding : rows.embeddings()) {
+                if (embedding.size() != dimension) {
+                    throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + embedding.size());
+                }
+                for (Float value : embedding) {
+                    floats.put(value);
+                }
+            }
+            out.write(vectors.array());
+
+            for (String content : rows.contents()) {
+                writeString(content);
+            }
+            for (String metadata : rows.metadata()) {
+                writeString(metadata);
+            }
+            out.writeInt((int) crc.getValue());
+            totalRows += rows.size();
+        }
+
+        public long getTotalRows() {
+            return totalRows;
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * Writes the footer. Call once every block has been written; closing
+         * without it leaves a file that readers reject as truncated.
+         */
+        public void finish() throws IOException {
+            out.writeInt(0);
+            out.writeLong(totalRows);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    public static class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final CRC32 crc = new CRC32();
+        private final boolean checksummed;
+        private final int dimension;
+        private long rowsRead;
+
+        public Reader(InputStream stream) throws IOException {
+            this.in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(stream, 1 << 20), crc));
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a snapshot file");
+            }
+            byte version = in.readByte();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            this.checksummed = version >= 2;
+            this.dimension = in.readInt();
+        }
+
+        public int getDimension() {
+            return dimension;
+        }
+
+        /**
+         * Next block of rows, or {@code null} at the end of the snapshot.
+         *
+         * @throws IOException if the file is truncated, a block fails its CRC or the
+         *                     row count does not match the footer
+         */
+        public MilvusService.RowBatch readBlock() throws IOException {
+            crc.reset();
+            int rows = in.readInt();
+            if (rows == 0) {
+                readFooter();
+                return null;
+            }
+            if (rows < 0) {
+                throw new IOException("Invalid block row count " + rows);
+            }
+
+            List<String> ids = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                ids.add(readString());
+            }
+
+            FloatBuffer floats = ByteBuffer.wrap(in.readNBytes(rows * dimension * Float.BYTES)).asFloatBuffer();
+            if (floats.remaining() != rows * dimension) {
+                throw new EOFException("Truncated vector block");
+            }
+            List<List<Float>> embeddings = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                Float[] vector = new Float[dimension];
+                for (int d = 0; d < dimension; d++) {
+                    vector[d] = floats.get();
+                }
+                embeddings.add(Arrays.asList(vector));
+            }
+
+            List<String> contents = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                contents.add(readString());
+            }
+            List<String> metadata = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                metadata.add(readString());
+            }
+
+            checkCrc();
+            rowsRead += rows;
+            return new MilvusService.RowBatch(ids, embeddings, contents, metadata);
+        }
+
+        /**
+         * Reads the rest of the file without decoding it, checking every block's
+         * CRC and the footer, so a damaged snapshot can be rejected before any
+         * row is imported.
+         *
+         * @return total number of rows in the snapshot
+         */
+        public long verify() throws IOException {
+            while (true) {
+                crc.reset();
+                int rows = in.readInt();
+                if (rows == 0) {
+                    readFooter();
+                    return rowsRead;
+                }
+                if (rows < 0) {
+                    throw new IOException("Invalid block row count " + rows);
+                }
+                for (int i = 0; i < rows; i++) {
+                    skipString();
+                }
+                in.skipNBytes((long) rows * dimension * Float.BYTES);
+                for (int i = 0; i < 2 * rows; i++) {
+                    skipString();
+                }
+                checkCrc();
+                rowsRead += rows;
+            }
+        }
+
+        private void readFooter() throws IOException {
+            long expected = in.readLong();
+            if (expected != rowsRead) {
+                throw new IOException("Snapshot footer says " + expected + " rows but " + rowsRead + " were read");
+            }
+        }
+
+        private void checkCrc() throws IOException {
+            if (!checksummed) {
+                return;
+            }
+            int actual = (int) crc.getValue();
+            if (in.readInt() != actual) {
+                throw new IOException("Snapshot block after row " + rowsRead + " fails its CRC check");
+            }
+        }
+
+        private void skipString() throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid string length " + length);
+            }
+            in.skipNBytes(length);
+        }
+
+        private String readString() throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid string length " + length);
+            }
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length != length) {
+                throw new EOFException("Truncated string");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Exports the collection to a {@link SnapshotFile} and loads it back, so an
+ * environment can be rebuilt without re-embedding the corpus.
+ */
+@Service
+public class SnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotService.class);
+
+    @Autowired
+    private MilvusService milvusService;
+
+    @Value("${milvus.collection.dimension}")
+    private int dimension;
+
+    @Value("${rag.snapshot.batch-size}")
+    private int batchSize;
+
+    /**
+     * Streams every row into {@code target}, paging through the collection by id.
+     * The file is written next to the target and moved into place when complete;
+     * if the export fails the partial file is deleted.
+     *
+     * @return number of rows exported
+     */
+    public long exportTo(Path target) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        long start = System.currentTimeMillis();
+        long rows;
+
+        try (OutputStream out = Files.newOutputStream(tmp);
+             SnapshotFile.Writer writer = new SnapshotFile.Writer(out, dimension)) {
+            String lastId = "";
+            while (true) {
+                MilvusService.RowBatch batch = milvusService.queryRowsAfter(lastId, batchSize);
+                if (batch.size() == 0) {
+                    break;
+                }
+                writer.writeBlock(batch);
+                lastId = batch.ids().get(batch.size() - 1);
+                logger.debug("Exported {} rows so far", writer.getTotalRows());
+            }
+            writer.finish();
+            rows = writer.getTotalRows();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Exported {} rows to {} in {} ms", rows, target, System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    /**
+     * Inserts every row of the snapshot, one Milvus insert per block. The whole
+     * file is checked first (block CRCs, footer and row count), so a truncated or
+     * corrupt snapshot is rejected before anything is written.
+     *
+     * @return number of rows imported
+     */
+    public long importFrom(Path source) throws IOException {
+        long start = System.currentTimeMillis();
+        long expected;
+        try (InputStream in = Files.newInputStream(source);
+             SnapshotFile.Reader reader = openReader(in)) {
+            expected = reader.verify();
+        }
+        logger.debug("Verified {} rows in {}", expected, source);
+
+        long rows = 0;
+        try (InputStream in = Files.newInputStream(source);
+             SnapshotFile.Reader reader = openReader(in)) {
+            MilvusService.RowBatch batch;
+            while ((batch = reader.readBlock()) != null) {
+                milvusService.insertRows(batch);
+                rows += batch.size();
+                logger.debug("Imported {}/{} rows so far", rows, expected);
+            }
+        }
+
+        logger.info("Imported {} rows from {} in {} ms", rows, source, System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    private SnapshotFile.Reader openReader(InputStream in) throws IOException {
+        SnapshotFile.Reader reader = new SnapshotFile.Reader(in);
+        if (reader.getDimension() != dimension) {
+            reader.close();
+            throw new IllegalStateException("Snapshot dimension " + reader.getDimension()
+                    + " does not match collection dimension " + dimension);
+        }
+        return reader;
+    }
+}
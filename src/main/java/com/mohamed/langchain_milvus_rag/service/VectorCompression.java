@@ -0,0 +1,118 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings and helpers for storing compressed vectors in Milvus. When enabled,
+ * Milvus holds embeddings truncated to {@code rag.compression.dimension} (and
+ * usually a quantized index type), searches over-fetch candidates, and the
+ * candidates are rescored exactly against the full-precision vectors kept in
+ * the local {@link FullPrecisionVectorStore}.
+ */
+@Component
+public class VectorCompression {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorCompression.class);
+
+    @Value("${rag.compression.enabled}")
+    private boolean enabled;
+
+    @Value("${milvus.collection.dimension}")
+    private int fullDimension;
+
+    @Value("${rag.compression.dimension}")
+    private int storedDimension;
+
+    @Value("${rag.compression.oversample}")
+    private int oversample;
+
+    @Value("${rag.compression.score-margin}")
+    private double scoreMargin;
+
+    @Value("${rag.compression.vector-file}")
+    private String vectorFile;
+
+    private FullPrecisionVectorStore vectorStore;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (storedDimension > fullDimension) {
+            throw new IllegalStateException("rag.compression.dimension (" + storedDimension
+                    + ") cannot exceed milvus.collection.dimension (" + fullDimension + ")");
+        }
+        vectorStore = new FullPrecisionVectorStore(Paths.get(vectorFile), fullDimension);
+        logger.info("Vector compression enabled: storing {} of {} dimensions, oversampling x{}",
+                storedDimension, fullDimension, oversample);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Dimension of the vectors held in Milvus.
+     */
+    public int getStoredDimension() {
+        return enabled ? storedDimension : fullDimension;
+    }
+
+    public int getOversample() {
+        return oversample;
+    }
+
+    /**
+     * How far below the similarity threshold compressed scores may fall and still
+     * be worth rescoring.
+     */
+    public double getScoreMargin() {
+        return scoreMargin;
+    }
+
+    public FullPrecisionVectorStore getVectorStore() {
+        return vectorStore;
+    }
+
+    /**
+     * The vector as stored in Milvus: the leading dimensions, re-normalized to unit length.
+     */
+    public List<Float> compress(List<Float> vector) {
+        if (!enabled || storedDimension == vector.size()) {
+            return vector;
+        }
+        return truncate(vector, storedDimension);
+    }
+
+    public static List<Float> truncate(List<Float> vector, int dimension) {
+        double norm = 0;
+        for (int d = 0; d < dimension; d++) {
+            norm += vector.get(d) * vector.get(d);
+        }
+        float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0f;
+        List<Float> truncated = new ArrayList<>(dimension);
+        for (int d = 0; d < dimension; d++) {
+            truncated.add(vector.get(d) * scale);
+        }
+        return truncated;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (vectorStore != null) {
+            vectorStore.close();
+        }
+    }
+}
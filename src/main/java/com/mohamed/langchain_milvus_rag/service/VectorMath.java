@@ -0,0 +1,34 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import java.util.List;
+
+/**
+ * Vector helpers shared by the services that score embeddings outside Milvus.
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    public static float[] toArray(List<Float> vector) {
+        float[] array = new float[vector.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = vector.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Cosine similarity, accumulated in double; 0 if either vector is all zeros.
+     */
+    public static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+}
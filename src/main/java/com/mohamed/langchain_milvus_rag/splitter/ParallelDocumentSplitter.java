@@ -0,0 +1,301 @@
+package com.mohamed.langchain_milvus_rag.splitter;
+
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentBySentenceSplitter;
+import dev.langchain4j.data.document.splitter.DocumentByWordSplitter;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drop-in replacement for {@code DocumentSplitters.recursive(maxSegmentSize, maxOverlapSize)}
+ * that produces the same segments with fewer copies of the input.
+ *
+ * <p>Paragraph and line boundaries are found by running the same separator
+ * patterns over the original text with {@link Matcher#region(int, int)}, so
+ * no {@code String[]} of parts is built at either level. Large documents are
+ * cut into regions at non-whitespace positions, where no separator can
+ * straddle the cut, and the regions are scanned in parallel on the
+ * fork-join pool. Packing parts into segments stays sequential because where
+ * each segment starts depends on the overlap taken from the previous one.
+ * Lines that are still too long are handed to the same sentence/word splitters
+ * the recursive splitter uses.</p>
+ */
+public class ParallelDocumentSplitter implements DocumentSplitter {
+
+    private static final Pattern PARAGRAPH_SEPARATOR = Pattern.compile("\\s*(?>\\R)\\s*(?>\\R)\\s*");
+    private static final Pattern LINE_SEPARATOR = Pattern.compile("\\s*(?>\\R)\\s*");
+    private static final String PARAGRAPH_DELIMITER = "\n\n";
+    private static final String LINE_DELIMITER = "\n";
+
+    private final int maxSegmentSize;
+    private final int maxOverlapSize;
+    private final int parallelThreshold;
+    private final ForkJoinPool pool;
+    private final DocumentSplitter sentenceSplitter;
+    private final DocumentBySentenceSplitter overlapSentenceSplitter;
+
+    public ParallelDocumentSplitter(int maxSegmentSize, int maxOverlapSize, int parallelThreshold) {
+        this(maxSegmentSize, maxOverlapSize, parallelThreshold, ForkJoinPool.commonPool());
+    }
+
+    public ParallelDocumentSplitter(int maxSegmentSize, int maxOverlapSize, int parallelThreshold, ForkJoinPool pool) {
+        this.maxSegmentSize = maxSegmentSize;
+        this.maxOverlapSize = maxOverlapSize;
+        this.parallelThreshold = parallelThreshold;
+        this.pool = pool;
+        // Same chain DocumentSplitters.recursive builds below the line level
+        this.sentenceSplitter = new DocumentBySentenceSplitter(maxSegmentSize, maxOverlapSize,
+                new DocumentByWordSplitter(maxSegmentSize, maxOverlapSize));
+        // Loading the sentence model is expensive; the recursive splitter does it per segment
+        this.overlapSentenceSplitter = new DocumentBySentenceSplitter(1, 0);
+    }
+
+    @Override
+    public List<TextSegment> split(Document document) {
+        String text = document.text();
+
+        IntList separators = text.length() >= parallelThreshold
+                ? pool.invoke(new ScanTask(text, 0, text.length(), Math.max(parallelThreshold / 4, 1)))
+                : scan(text, PARAGRAPH_SEPARATOR, 0, text.length());
+
+        List<String> segmentTexts = new ArrayList<>();
+        pack(text, 0, text.length(), separators, PARAGRAPH_DELIMITER, true, segmentTexts);
+
+        List<TextSegment> segments = new ArrayList<>(segmentTexts.size());
+        for (int i = 0; i < segmentTexts.size(); i++) {
+            Metadata metadata = document.metadata().copy().put("index", String.valueOf(i));
+            segments.add(TextSegment.from(segmentTexts.get(i), metadata));
+        }
+        return segments;
+    }
+
+    /**
+     * Greedily packs the parts between separators into segments, mirroring
+     * {@code HierarchicalDocumentSplitter.split}. Parts are spans of {@code text}.
+     */
+    private void pack(CharSequence text, int start, int end, IntList separators, String delimiter,
+                      boolean paragraphLevel, List<String> out) {
+        IntList parts = partsBetween(start, end, separators);
+        StringBuilder builder = new StringBuilder(maxSegmentSize + delimiter.length());
+        String overlap = null;
+
+        for (int i = 0; i < parts.size(); i += 2) {
+            int partStart = parts.get(i);
+            int partEnd = parts.get(i + 1);
+            int partLength = partEnd - partStart;
+
+            if (hasSpaceFor(builder, delimiter, partLength, maxSegmentSize)) {
+                append(builder, delimiter, text, partStart, partEnd);
+                continue;
+            }
+
+            if (builder.length() > 0) {
+                String segmentText = builder.toString().trim();
+                if (!segmentText.equals(overlap)) {
+                    out.add(segmentText);
+                    overlap = overlapFrom(segmentText);
+                    builder.setLength(0);
+                    append(builder, delimiter, overlap, 0, overlap.length());
+                    if (hasSpaceFor(builder, delimiter, partLength, maxSegmentSize)) {
+                        append(builder, delimiter, text, partStart, partEnd);
+                        continue;
+                    }
+                }
+            }
+
+            builder.setLength(0);
+            if (paragraphLevel) {
+                pack(text, partStart, partEnd, scan(text, LINE_SEPARATOR, partStart, partEnd), LINE_DELIMITER, false, out);
+            } else {
+                String part = text.subSequence(partStart, partEnd).toString();
+                for (TextSegment segment : sentenceSplitter.split(Document.from(part))) {
+                    out.add(segment.text());
+                }
+            }
+        }
+
+        if (builder.length() > 0) {
+            String segmentText = builder.toString().trim();
+            if (!segmentText.equals(overlap)) {
+                out.add(segmentText);
+            }
+        }
+    }
+
+    /**
+     * Trailing whole sentences of the segment that fit in the overlap budget,
+     * or an empty string when the whole segment would fit.
+     */
+    private String overlapFrom(String segmentText) {
+        if (maxOverlapSize == 0) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(maxOverlapSize);
+        String[] sentences = overlapSentenceSplitter.split(segmentText);
+        for (int i = sentences.length - 1; i >= 0; i--) {
+            String sentence = sentences[i];
+            if (!hasSpaceFor(builder, " ", sentence.length(), maxOverlapSize)) {
+                return builder.toString().trim();
+            }
+            if (builder.length() > 0) {
+                builder.insert(0, ' ');
+            }
+            builder.insert(0, sentence);
+        }
+        return "";
+    }
+
+    private static boolean hasSpaceFor(StringBuilder builder, String delimiter, int length, int maxSize) {
+        if (builder.length() > 0) {
+            return builder.length() + delimiter.length() + length <= maxSize;
+        }
+        return length <= maxSize;
+    }
+
+    private static void append(StringBuilder builder, String delimiter, CharSequence text, int start, int end) {
+        if (builder.length() > 0) {
+            builder.append(delimiter);
+        }
+        builder.append(text, start, end);
+    }
+
+    /**
+     * Spans between separator matches with {@link String#split(String)} semantics:
+     * a leading empty part is kept, trailing empty parts are dropped, and no
+     * match yields the whole range.
+     */
+    static IntList partsBetween(int start, int end, IntList separators) {
+        IntList parts = new IntList(separators.size() + 2);
+        if (separators.size() == 0) {
+            parts.add(start);
+            parts.add(end);
+            return parts;
+        }
+        int partStart = start;
+        for (int i = 0; i < separators.size(); i += 2) {
+            parts.add(partStart);
+            parts.add(separators.get(i));
+            partStart = separators.get(i + 1);
+        }
+        parts.add(partStart);
+        parts.add(end);
+        while (parts.size() > 0 && parts.get(parts.size() - 1) == parts.get(parts.size() - 2)) {
+            parts.removeLast(2);
+        }
+        return parts;
+    }
+
+    /**
+     * Start/end pairs of every separator match in {@code [start, end)}.
+     */
+    static IntList scan(CharSequence text, Pattern separator, int start, int end) {
+        IntList matches = new IntList(16);
+        Matcher matcher = separator.matcher(text);
+        matcher.region(start, end);
+        while (matcher.find()) {
+            matches.add(matcher.start());
+            matches.add(matcher.end());
+        }
+        return matches;
+    }
+
+    /**
+     * Characters a separator match can consist of: {@code \s} plus the extra {@code \R} line breaks.
+     */
+    static boolean isSeparatorChar(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r'
+                || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Scans for paragraph separators, splitting the range in half at a
+     * position just after a non-separator character so that no match can
+     * cross the cut and the concatenated results equal a sequential scan.
+     */
+    private static class ScanTask extends RecursiveTask<IntList> {
+
+        private final CharSequence text;
+        private final int start;
+        private final int end;
+        private final int regionSize;
+
+        ScanTask(CharSequence text, int start, int end, int regionSize) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.regionSize = regionSize;
+        }
+
+        @Override
+        protected IntList compute() {
+            if (end - start <= regionSize) {
+                return scan(text, PARAGRAPH_SEPARATOR, start, end);
+            }
+            int cut = start + (end - start) / 2;
+            while (cut < end && isSeparatorChar(text.charAt(cut - 1))) {
+                cut++;
+            }
+            if (cut >= end) {
+                return scan(text, PARAGRAPH_SEPARATOR, start, end);
+            }
+
+            ScanTask left = new ScanTask(text, start, cut, regionSize);
+            ScanTask right = new ScanTask(text, cut, end, regionSize);
+            left.fork();
+            IntList rightMatches = right.compute();
+            IntList leftMatches = left.join();
+            leftMatches.addAll(rightMatches);
+            return leftMatches;
+        }
+    }
+
+    /**
+     * Growable int array, used for span offsets instead of boxed lists.
+     */
+    static final class IntList {
+
+        private int[] values;
+        private int size;
+
+        IntList(int capacity) {
+            values = new int[Math.max(capacity, 2)];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        void removeLast(int count) {
+            size -= count;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
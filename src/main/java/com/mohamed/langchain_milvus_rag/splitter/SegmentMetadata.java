@@ -0,0 +1,98 @@
+package com.mohamed.langchain_milvus_rag.splitter;
+
+
+import java.util.*;
+
+/**
+ * Read-only metadata of one segment: the parent document's metadata, shared by
+ * every segment of that document, overlaid with the per-segment keys. Replaces
+ * copying the parent map once per segment.
+ */
+public final class SegmentMetadata extends AbstractMap<String, String> {
+
+    public static final String SEGMENT_INDEX = "segment_index";
+    public static final String TOTAL_SEGMENTS = "total_segments";
+    public static final String CONTENT_LENGTH = "content_length";
+
+    private static final List<String> OWN_KEYS = List.of(SEGMENT_INDEX, TOTAL_SEGMENTS, CONTENT_LENGTH);
+
+    private final Map<String, String> parent;
+    private final int segmentIndex;
+    private final int totalSegments;
+    private final int contentLength;
+
+    /**
+     * @param parent metadata shared by all segments of the document; must not be modified afterwards
+     */
+    public SegmentMetadata(Map<String, String> parent, int segmentIndex, int totalSegments, int contentLength) {
+        this.parent = parent;
+        this.segmentIndex = segmentIndex;
+        this.totalSegments = totalSegments;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Snapshot of request metadata that is safe to share across segments.
+     */
+    public static Map<String, String> freeze(Map<String, String> metadata) {
+        return Collections.unmodifiableMap(new HashMap<>(metadata));
+    }
+
+    @Override
+    public String get(Object key) {
+        if (SEGMENT_INDEX.equals(key)) {
+            return String.valueOf(segmentIndex);
+        }
+        if (TOTAL_SEGMENTS.equals(key)) {
+            return String.valueOf(totalSegments);
+        }
+        if (CONTENT_LENGTH.equals(key)) {
+            return String.valueOf(contentLength);
+        }
+        return parent.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return OWN_KEYS.contains(key) || parent.containsKey(key);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                Iterator<Entry<String, String>> inherited = parent.entrySet().stream()
+                        .filter(e -> !OWN_KEYS.contains(e.getKey()))
+                        .iterator();
+                Iterator<String> own = OWN_KEYS.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return inherited.hasNext() || own.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (inherited.hasNext()) {
+                            return inherited.next();
+                        }
+                        String key = own.next();
+                        return new SimpleImmutableEntry<>(key, get(key));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = parent.size() + OWN_KEYS.size();
+                for (String key : OWN_KEYS) {
+                    if (parent.containsKey(key)) {
+                        size--;
+                    }
+                }
+                return size;
+            }
+        };
+    }
+}
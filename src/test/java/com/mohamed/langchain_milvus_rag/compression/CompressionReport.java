@@ -0,0 +1,235 @@
+package com.mohamed.langchain_milvus_rag.compression;
+
+
+import com.mohamed.langchain_milvus_rag.service.MilvusService;
+import com.mohamed.langchain_milvus_rag.service.SnapshotFile;
+import com.mohamed.langchain_milvus_rag.service.VectorCompression;
+import com.mohamed.langchain_milvus_rag.service.VectorMath;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Recall and memory-footprint report for the {@code rag.compression.*} settings.
+ * For each stored dimension and index encoding it searches the compressed
+ * vectors exhaustively, over-fetches {@code K x oversample} candidates, rescores
+ * them against the full-precision vectors and compares the final top-K with an
+ * exact search. Index traversal (nprobe) is not modelled, only the loss from
+ * compression itself.
+ *
+ * <p>Pass a snapshot written by {@code --snapshot.export} to measure on the real
+ * corpus; without one a synthetic clustered corpus is used, which says little
+ * about truncation because its dimensions carry equal information.</p>
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.mohamed.langchain_milvus_rag.compression.CompressionReport \
+ *     -Dexec.args="documents.snap"
+ * </pre>
+ */
+public class CompressionReport {
+
+    private static final int K = 5;
+    private static final int QUERIES = 200;
+    private static final int[] OVERSAMPLE = {1, 2, 4, 8};
+    private static final int[] DIMENSIONS = {1536, 1024, 768, 512, 256};
+    private static final int SLOT_OVERHEAD_BYTES = Short.BYTES + 64;
+
+    private enum Encoding {
+        FLOAT32(Float.BYTES), SQ8(1);
+
+        final int bytesPerDimension;
+
+        Encoding(int bytesPerDimension) {
+            this.bytesPerDimension = bytesPerDimension;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        float[][] corpus = args.length > 0 ? readSnapshot(args[0]) : synthetic(10_000, 1536, 50, new Random(7));
+        int fullDimension = corpus[0].length;
+        float[][] queries = queries(corpus, new Random(11));
+
+        int[][] exact = new int[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            exact[q] = topK(queries[q], corpus, K);
+        }
+
+        System.out.printf("corpus=%d vectors, full dimension=%d, K=%d, queries=%d%n%n",
+                corpus.length, fullDimension, K, QUERIES);
+        System.out.printf("%-6s %-8s %14s %14s", "dim", "encoding", "milvus MB", "side file MB");
+        for (int oversample : OVERSAMPLE) {
+            System.out.printf(" %10s", "recall@x" + oversample);
+        }
+        System.out.println();
+
+        for (int dimension : DIMENSIONS) {
+            if (dimension > fullDimension) {
+                continue;
+            }
+            for (Encoding encoding : Encoding.values()) {
+                float[][] compressed = compress(corpus, dimension, encoding);
+                int maxCandidates = K * OVERSAMPLE[OVERSAMPLE.length - 1];
+
+                double[] recall = new double[OVERSAMPLE.length];
+                for (int q = 0; q < QUERIES; q++) {
+                    float[] query = truncate(queries[q], dimension);
+                    int[] candidates = topK(query, compressed, maxCandidates);
+                    for (int o = 0; o < OVERSAMPLE.length; o++) {
+                        int[] rescored = rescore(queries[q], corpus, Arrays.copyOf(candidates, Math.min(candidates.length, K * OVERSAMPLE[o])));
+                        recall[o] += overlap(exact[q], rescored) / (double) K;
+                    }
+                }
+
+                double milvusMb = (double) corpus.length * dimension * encoding.bytesPerDimension / (1 << 20);
+                double sideFileMb = dimension == fullDimension && encoding == Encoding.FLOAT32
+                        ? 0
+                        : (double) corpus.length * (fullDimension * Float.BYTES + SLOT_OVERHEAD_BYTES) / (1 << 20);
+                System.out.printf("%-6d %-8s %14.1f %14.1f", dimension, encoding, milvusMb, sideFileMb);
+                for (double r : recall) {
+                    System.out.printf(" %10.3f", r / QUERIES);
+                }
+                System.out.println();
+            }
+        }
+        System.out.println("\nmilvus MB: raw vector bytes resident for the index; side file MB: full-precision vectors on local disk/page cache");
+    }
+
+    private static float[][] readSnapshot(String path) throws IOException {
+        List<float[]> vectors = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(Paths.get(path));
+             SnapshotFile.Reader reader = new SnapshotFile.Reader(in)) {
+            MilvusService.RowBatch batch;
+            while ((batch = reader.readBlock()) != null) {
+                for (List<Float> embedding : batch.embeddings()) {
+                    float[] vector = new float[embedding.size()];
+                    for (int d = 0; d < vector.length; d++) {
+                        vector[d] = embedding.get(d);
+                    }
+                    vectors.add(vector);
+                }
+            }
+        }
+        return vectors.toArray(new float[0][]);
+    }
+
+    private static float[][] synthetic(int size, int dimension, int clusters, Random random) {
+        float[][] centroids = new float[clusters][dimension];
+        for (float[] centroid : centroids) {
+            for (int d = 0; d < dimension; d++) {
+                centroid[d] = (float) random.nextGaussian();
+            }
+        }
+        float[][] corpus = new float[size][dimension];
+        for (int i = 0; i < size; i++) {
+            float[] centroid = centroids[random.nextInt(clusters)];
+            for (int d = 0; d < dimension; d++) {
+                corpus[i][d] = centroid[d] + 0.8f * (float) random.nextGaussian();
+            }
+            normalize(corpus[i]);
+        }
+        return corpus;
+    }
+
+    /** Corpus vectors with noise added, so each query has near but not identical neighbours. */
+    private static float[][] queries(float[][] corpus, Random random) {
+        float[][] queries = new float[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            float[] base = corpus[random.nextInt(corpus.length)];
+            float[] query = new float[base.length];
+            double noise = 1.0 / Math.sqrt(base.length);
+            for (int d = 0; d < base.length; d++) {
+                query[d] = base[d] + (float) (noise * random.nextGaussian());
+            }
+            normalize(query);
+            queries[q] = query;
+        }
+        return queries;
+    }
+
+    private static float[][] compress(float[][] corpus, int dimension, Encoding encoding) {
+        float[][] compressed = new float[corpus.length][];
+        for (int i = 0; i < corpus.length; i++) {
+            compressed[i] = truncate(corpus[i], dimension);
+        }
+        if (encoding == Encoding.SQ8) {
+            // Per-dimension min/max scalar quantization to 256 levels, as IVF_SQ8 does
+            for (int d = 0; d < dimension; d++) {
+                float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+                for (float[] vector : compressed) {
+                    min = Math.min(min, vector[d]);
+                    max = Math.max(max, vector[d]);
+                }
+                float step = (max - min) / 255f;
+                for (float[] vector : compressed) {
+                    vector[d] = step == 0 ? min : min + Math.round((vector[d] - min) / step) * step;
+                }
+            }
+        }
+        return compressed;
+    }
+
+    private static float[] truncate(float[] vector, int dimension) {
+        List<Float> boxed = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            boxed.add(value);
+        }
+        List<Float> truncated = VectorCompression.truncate(boxed, dimension);
+        float[] result = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            result[d] = truncated.get(d);
+        }
+        return result;
+    }
+
+    private static int[] topK(float[] query, float[][] vectors, int k) {
+        PriorityQueue<double[]> heap = new PriorityQueue<>(Comparator.comparingDouble(e -> e[0]));
+        for (int i = 0; i < vectors.length; i++) {
+            double score = VectorMath.cosine(query, vectors[i]);
+            if (heap.size() < k) {
+                heap.offer(new double[]{score, i});
+            } else if (score > heap.peek()[0]) {
+                heap.poll();
+                heap.offer(new double[]{score, i});
+            }
+        }
+        int[] ids = new int[heap.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = (int) heap.poll()[1];
+        }
+        return ids;
+    }
+
+    private static int[] rescore(float[] query, float[][] corpus, int[] candidates) {
+        Integer[] order = Arrays.stream(candidates).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> VectorMath.cosine(query, corpus[i])).reversed());
+        return Arrays.stream(order).limit(K).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int overlap(int[] expected, int[] actual) {
+        Set<Integer> expectedSet = new HashSet<>();
+        for (int id : expected) {
+            expectedSet.add(id);
+        }
+        int hits = 0;
+        for (int id : actual) {
+            if (expectedSet.contains(id)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static void normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] *= scale;
+        }
+    }
+}
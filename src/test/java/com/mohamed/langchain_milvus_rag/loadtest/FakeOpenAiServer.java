@@ -0,0 +1,216 @@
+package com.mohamed.langchain_milvus_rag.loadtest;
+
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the OpenAI embeddings and chat completions endpoints.
+ * Embeddings are hashed bag-of-words vectors, so texts sharing words are close
+ * under cosine similarity. Latency is a fixed delay per call plus, for chat,
+ * the time to "stream" the answer at the configured token rate.
+ */
+public class FakeOpenAiServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FakeOpenAiServer.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int dimension;
+    private final long embeddingLatencyMillis;
+    private final long chatLatencyMillis;
+    private final double tokensPerSecond;
+    private final int completionTokens;
+    private final AtomicLong embeddingCalls = new AtomicLong();
+    private final AtomicLong chatCalls = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FakeOpenAiServer(int dimension, long embeddingLatencyMillis, long chatLatencyMillis,
+                            double tokensPerSecond, int completionTokens) {
+        this.dimension = dimension;
+        this.embeddingLatencyMillis = embeddingLatencyMillis;
+        this.chatLatencyMillis = chatLatencyMillis;
+        this.tokensPerSecond = tokensPerSecond;
+        this.completionTokens = completionTokens;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/v1/embeddings", this::handleEmbeddings);
+        server.createContext("/v1/chat/completions", this::handleChat);
+        server.start();
+        logger.info("Fake OpenAI server listening on {}", getBaseUrl());
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    public long getEmbeddingCalls() {
+        return embeddingCalls.get();
+    }
+
+    public long getChatCalls() {
+        return chatCalls.get();
+    }
+
+    private void handleEmbeddings(HttpExchange exchange) throws IOException {
+        try {
+            embeddingCalls.incrementAndGet();
+            JsonNode request = readBody(exchange);
+            List<String> inputs = new ArrayList<>();
+            JsonNode input = request.get("input");
+            if (input.isArray()) {
+                input.forEach(node -> inputs.add(node.asText()));
+            } else {
+                inputs.add(input.asText());
+            }
+
+            sleep(embeddingLatencyMillis);
+
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("object", "list");
+            response.put("model", request.path("model").asText("fake-embedding"));
+            ArrayNode data = response.putArray("data");
+            int promptTokens = 0;
+            for (int i = 0; i < inputs.size(); i++) {
+                ObjectNode item = data.addObject();
+                item.put("object", "embedding");
+                item.put("index", i);
+                ArrayNode vector = item.putArray("embedding");
+                for (float value : embed(inputs.get(i), dimension)) {
+                    vector.add(value);
+                }
+                promptTokens += countTokens(inputs.get(i));
+            }
+            ObjectNode usage = response.putObject("usage");
+            usage.put("prompt_tokens", promptTokens);
+            usage.put("total_tokens", promptTokens);
+
+            writeJson(exchange, response);
+        } catch (Exception e) {
+            logger.error("Error serving fake embeddings: ", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleChat(HttpExchange exchange) throws IOException {
+        try {
+            chatCalls.incrementAndGet();
+            JsonNode request = readBody(exchange);
+            int promptTokens = 0;
+            for (JsonNode message : request.path("messages")) {
+                promptTokens += countTokens(message.path("content").asText());
+            }
+
+            long generationMillis = tokensPerSecond > 0 ? (long) (completionTokens * 1000 / tokensPerSecond) : 0;
+            sleep(chatLatencyMillis + generationMillis);
+
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("id", "chatcmpl-fake-" + chatCalls.get());
+            response.put("object", "chat.completion");
+            response.put("created", System.currentTimeMillis() / 1000);
+            response.put("model", request.path("model").asText("fake-chat"));
+            ObjectNode choice = response.putArray("choices").addObject();
+            choice.put("index", 0);
+            ObjectNode message = choice.putObject("message");
+            message.put("role", "assistant");
+            message.put("content", "word ".repeat(completionTokens).trim());
+            choice.put("finish_reason", "stop");
+            ObjectNode usage = response.putObject("usage");
+            usage.put("prompt_tokens", promptTokens);
+            usage.put("completion_tokens", completionTokens);
+            usage.put("total_tokens", promptTokens + completionTokens);
+
+            writeJson(exchange, response);
+        } catch (Exception e) {
+            logger.error("Error serving fake chat completion: ", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Feature-hashes the lower-cased words of the text into a unit vector.
+     */
+    public static float[] embed(String text, int dimension) {
+        float[] vector = new float[dimension];
+        for (String word : text.toLowerCase().split("\\W+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            int hash = word.hashCode();
+            int bucket = Math.floorMod(hash, dimension);
+            vector[bucket] += (hash & 1) == 0 ? 1f : -1f;
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private static int countTokens(String text) {
+        return Math.max(1, text.length() / 4);
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    private void writeJson(HttpExchange exchange, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.mohamed.langchain_milvus_rag.loadtest;
+
+
+import com.mohamed.langchain_milvus_rag.entity.Document;
+import com.mohamed.langchain_milvus_rag.service.MilvusService;
+import com.mohamed.langchain_milvus_rag.service.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Brute-force cosine search over an in-process list, standing in for Milvus
+ * during load tests. Keeps the same threshold and top-K semantics as
+ * {@link MilvusService#searchSimilarDocuments(String, List, SearchOptions)}; there is a single
+ * collection.
+ */
+public class InMemoryMilvusService extends MilvusService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryMilvusService.class);
+
+    private final List<Document> documents = new ArrayList<>();
+    private final List<float[]> vectors = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void loadCollection() {
+        logger.info("Using in-memory vector store; nothing to load");
+    }
+
+    @Override
+    public void insertDocument(Document document) {
+        insertDocuments(List.of(document));
+    }
+
+    @Override
+    public void insertDocuments(List<Document> batch) {
+        lock.writeLock().lock();
+        try {
+            // Same upsert semantics as MilvusService: a known id replaces its row
+            for (Document document : batch) {
+                Integer position = positions.get(document.getId());
+                if (position != null) {
+                    documents.set(position, document);
+                    vectors.set(position, VectorMath.toArray(document.getEmbedding()));
+                } else {
+                    positions.put(document.getId(), documents.size());
+                    documents.add(document);
+                    vectors.add(VectorMath.toArray(document.getEmbedding()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> getSearchCollections() {
+        return List.of("in-memory");
+    }
+
+    @Override
+    public List<Document> searchSimilarDocuments(String collection, List<Float> queryEmbedding, SearchOptions options) {
+        int maxResults = options.topK();
+        double similarityThreshold = options.threshold();
+        float[] query = VectorMath.toArray(queryEmbedding);
+        PriorityQueue<Document> topK = new PriorityQueue<>(Comparator.comparingDouble(Document::getScore));
+
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < vectors.size(); i++) {
+                double score = VectorMath.cosine(query, vectors.get(i));
+                if (score < similarityThreshold || options.excludeIds().contains(documents.get(i).getId())) {
+                    continue;
+                }
+                if (topK.size() < maxResults || score > topK.peek().getScore()) {
+                    Document stored = documents.get(i);
+                    Document hit = new Document(stored.getId(), stored.getContent(),
+                            options.withVectors() ? stored.getEmbedding() : null, stored.getMetadata());
+                    hit.setScore(score);
+                    topK.offer(hit);
+                    if (topK.size() > maxResults) {
+                        topK.poll();
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Document> results = new ArrayList<>(topK);
+        results.sort(Comparator.comparingDouble(Document::getScore).reversed());
+        return results;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.mohamed.langchain_milvus_rag.loadtest;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop driver for a mixed {@code /ask} and {@code /documents} workload.
+ * Requests are issued on a fixed schedule regardless of how fast earlier ones
+ * complete, and latency is measured from the scheduled start, so a stalled
+ * server shows up in the tail instead of silently lowering the offered load.
+ */
+public class LoadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final String[] VOCABULARY = {
+            "milvus", "vector", "index", "embedding", "segment", "cluster", "query", "latency",
+            "throughput", "replica", "shard", "partition", "cosine", "distance", "recall", "memory",
+            "paris", "france", "tower", "museum", "river", "bridge", "history", "culture",
+            "spring", "service", "controller", "request", "response", "thread", "pool", "cache"
+    };
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final Random random;
+
+    public LoadGenerator(String baseUrl, long seed) {
+        this.baseUrl = baseUrl;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Adds {@code count} synthetic documents sequentially so the store has
+     * something to retrieve before the timed run starts.
+     */
+    public void seed(int count, int wordsPerDocument) throws Exception {
+        for (int i = 0; i < count; i++) {
+            HttpResponse<String> response = post("/api/rag/documents", documentBody(wordsPerDocument));
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+            }
+        }
+        logger.info("Seeded {} documents", count);
+    }
+
+    public Report run(double targetRps, Duration duration, double askRatio, int wordsPerDocument) throws InterruptedException {
+        Recorder ask = new Recorder("ask");
+        Recorder documents = new Recorder("documents");
+        long intervalNanos = (long) (1_000_000_000L / targetRps);
+        long totalRequests = (long) (targetRps * duration.toMillis() / 1000);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < totalRequests; i++) {
+                long scheduled = start + i * intervalNanos;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                boolean isAsk = random.nextDouble() < askRatio;
+                String path = isAsk ? "/api/rag/ask" : "/api/rag/documents";
+                String body = isAsk ? questionBody() : documentBody(wordsPerDocument);
+                Recorder recorder = isAsk ? ask : documents;
+
+                executor.submit(() -> {
+                    try {
+                        HttpResponse<String> response = post(path, body);
+                        recorder.record(System.nanoTime() - scheduled, response.statusCode() == 200);
+                    } catch (Exception e) {
+                        recorder.record(System.nanoTime() - scheduled, false);
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.MINUTES);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        long allocatedBytes = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+        return new Report(targetRps, elapsedNanos, allocatedBytes, List.of(ask.summarize(), documents.summarize()));
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(120))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private synchronized String questionBody() {
+        return "{\"question\":\"What about " + words(8) + "?\"}";
+    }
+
+    private synchronized String documentBody(int wordsPerDocument) {
+        return "{\"content\":\"" + words(wordsPerDocument) + "\",\"metadata\":{\"source\":\"loadtest\"}}";
+    }
+
+    private String words(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(i % 12 == 0 ? ". " : " ");
+            }
+            sb.append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Collects raw latencies for one request type; percentiles are computed
+     * once at the end by sorting.
+     */
+    static class Recorder {
+        private final String name;
+        private long[] latencies = new long[1024];
+        private int count;
+        private final AtomicLong errors = new AtomicLong();
+
+        Recorder(String name) {
+            this.name = name;
+        }
+
+        synchronized void record(long latencyNanos, boolean ok) {
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+
+        synchronized OperationStats summarize() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new OperationStats(name, count, errors.get(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99));
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+
+    public record OperationStats(String name, int count, long errors, double p50Millis, double p95Millis, double p99Millis) {
+    }
+
+    public record Report(double targetRps, long elapsedNanos, long allocatedBytes, List<OperationStats> operations) {
+
+        public double throughput() {
+            int completed = operations.stream().mapToInt(OperationStats::count).sum();
+            return completed / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        public double allocationRateMbPerSecond() {
+            return allocatedBytes / (1024.0 * 1024.0) / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("target=%.1f rps, achieved=%.1f rps, elapsed=%.1fs, allocation=%.1f MB/s%n",
+                    targetRps, throughput(), elapsedNanos / 1_000_000_000.0, allocationRateMbPerSecond()));
+            for (OperationStats op : operations) {
+                sb.append(String.format("  %-10s n=%-6d errors=%-4d p50=%8.1fms p95=%8.1fms p99=%8.1fms%n",
+                        op.name(), op.count(), op.errors(), op.p50Millis(), op.p95Millis(), op.p99Millis()));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.mohamed.langchain_milvus_rag.loadtest;
+
+
+import com.mohamed.langchain_milvus_rag.service.MilvusService;
+import io.milvus.client.MilvusServiceClient;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Replaces the Milvus connection with the in-memory stand-in. Used together
+ * with {@code milvus.enabled=false} so {@code MilvusConfig} never dials out.
+ */
+@TestConfiguration
+public class LoadTestConfiguration {
+
+    @Bean
+    public MilvusServiceClient milvusClient() {
+        // Only satisfies MilvusService's injection point; every call is overridden by the stand-in
+        return Mockito.mock(MilvusServiceClient.class);
+    }
+
+    @Bean
+    @Primary
+    public MilvusService inMemoryMilvusService() {
+        return new InMemoryMilvusService();
+    }
+}
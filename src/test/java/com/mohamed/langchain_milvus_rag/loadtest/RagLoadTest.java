@@ -0,0 +1,81 @@
+package com.mohamed.langchain_milvus_rag.loadtest;
+
+
+import com.mohamed.langchain_milvus_rag.LangchainMilvusRagApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts the application against {@link FakeOpenAiServer} and
+ * {@link InMemoryMilvusService} and drives a mixed workload through HTTP.
+ * Only runs with {@code -Dloadtest=true}, e.g. {@code mvn test -Ploadtest}.
+ * Knobs are read from {@code loadtest.*} system properties. The ingestion log,
+ * slow-query log and vector side file go to a temporary directory rather than
+ * {@code ./data}.
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class RagLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RagLoadTest.class);
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void mixedWorkload() throws Exception {
+        double rps = Double.parseDouble(System.getProperty("loadtest.rps", "50"));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 30));
+        double askRatio = Double.parseDouble(System.getProperty("loadtest.ask-ratio", "0.8"));
+        int seedDocuments = Integer.getInteger("loadtest.seed-documents", 200);
+        int wordsPerDocument = Integer.getInteger("loadtest.words-per-document", 400);
+
+        try (FakeOpenAiServer openAi = new FakeOpenAiServer(
+                Integer.getInteger("loadtest.dimension", 1536),
+                Long.getLong("loadtest.embedding-latency-ms", 20),
+                Long.getLong("loadtest.chat-latency-ms", 200),
+                Double.parseDouble(System.getProperty("loadtest.tokens-per-second", "100")),
+                Integer.getInteger("loadtest.completion-tokens", 50))) {
+            openAi.start();
+
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                    LangchainMilvusRagApplication.class, LoadTestConfiguration.class)
+                    .properties(
+                            "server.port=0",
+                            "milvus.enabled=false",
+                            "openai.api.key=loadtest",
+                            "openai.api.base-url=" + openAi.getBaseUrl(),
+                            "rag.similarity-threshold=" + System.getProperty("loadtest.similarity-threshold", "0.2"),
+                            "rag.ingestion.log-dir=" + dataDir.resolve("ingestion-log"),
+                            "rag.tracing.slow-log-dir=" + dataDir.resolve("slow-queries"),
+                            "rag.compression.vector-file=" + dataDir.resolve("full-vectors.bin"),
+                            "logging.level.dev.langchain4j=WARN",
+                            "logging.level.com.mohamed.langchain_milvus_rag=WARN")
+                    .run();
+
+            try {
+                String baseUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+                LoadGenerator generator = new LoadGenerator(baseUrl, 42L);
+                generator.seed(seedDocuments, wordsPerDocument);
+
+                LoadGenerator.Report report = generator.run(rps, duration, askRatio, wordsPerDocument);
+                logger.info("Load test report (embedding calls={}, chat calls={}):\n{}",
+                        openAi.getEmbeddingCalls(), openAi.getChatCalls(), report);
+
+                long errors = report.operations().stream().mapToLong(LoadGenerator.OperationStats::errors).sum();
+                assertTrue(errors == 0, "Load test saw " + errors + " failed requests");
+            } finally {
+                context.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectionRouterTest {
+
+    private static final long SHARD_TIMEOUT_MILLIS = 200;
+    private static final List<Float> QUERY = List.of(1f, 0f);
+
+    private final FakeMilvusService milvusService = new FakeMilvusService();
+    private final CollectionRouter router = new CollectionRouter();
+
+    /**
+     * Answers each collection with fixed hits; "slow" outlives the shard
+     * timeout and "failing" throws.
+     */
+    private static class FakeMilvusService extends MilvusService {
+
+        final Map<String, List<Document>> hits = new HashMap<>();
+        final Map<String, Long> timeouts = new ConcurrentHashMap<>();
+
+        @Override
+        public List<Document> searchSimilarDocuments(String collection, List<Float> queryEmbedding, SearchOptions options) {
+            timeouts.put(collection, options.timeoutMillis());
+            switch (collection) {
+                case "slow" -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return List.of(hit("slow-0", 0.99));
+                }
+                case "failing" -> throw new RuntimeException("Milvus search failed: shard unavailable");
+                default -> {
+                    return hits.get(collection);
+                }
+            }
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        milvusService.hits.put("a", List.of(hit("a-0", 0.95), hit("a-1", 0.80), hit("a-2", 0.60)));
+        milvusService.hits.put("b", List.of(hit("b-0", 0.90), hit("b-1", 0.85), hit("b-2", 0.70)));
+        ReflectionTestUtils.setField(router, "milvusService", milvusService);
+        ReflectionTestUtils.setField(router, "shardTimeoutMillis", SHARD_TIMEOUT_MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        router.shutdown();
+    }
+
+    @Test
+    void hitsFromEveryShardAreMergedIntoOneTopK() {
+        List<Document> merged = router.search(QUERY, List.of("a", "b"), new MilvusService.SearchOptions(4, 0.5, 10));
+
+        assertEquals(List.of("a-0", "b-0", "b-1", "a-1"), ids(merged));
+        assertEquals(SHARD_TIMEOUT_MILLIS, (long) milvusService.timeouts.get("a"));
+        assertEquals(SHARD_TIMEOUT_MILLIS, (long) milvusService.timeouts.get("b"));
+    }
+
+    @Test
+    void slowAndFailingShardsAreLeftOutOfTheResult() {
+        long start = System.currentTimeMillis();
+        List<Document> merged = router.search(QUERY, List.of("slow", "failing", "a"), new MilvusService.SearchOptions(2, 0.5, 10));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(List.of("a-0", "a-1"), ids(merged));
+        assertTrue(elapsed < 5_000, "waited " + elapsed + " ms for the slow shard");
+    }
+
+    @Test
+    void searchFailsOnlyWhenEveryShardFails() {
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> router.search(QUERY, List.of("slow", "failing"), new MilvusService.SearchOptions(2, 0.5, 10)));
+
+        assertTrue(e.getMessage().contains("all 2 collections"), e.getMessage());
+    }
+
+    private static Document hit(String id, double score) {
+        Document document = new Document(id, "content of " + id, null, Map.of());
+        document.setScore(score);
+        return document;
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+}
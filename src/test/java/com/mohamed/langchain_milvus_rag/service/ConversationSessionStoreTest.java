@@ -0,0 +1,77 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationSessionStoreTest {
+
+    // One turn of a one-letter question and answer
+    private static final long TURN_BYTES = 64 + 2 * 2;
+
+    private final ConversationSessionStore store = new ConversationSessionStore();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "maxSessions", 3);
+        ReflectionTestUtils.setField(store, "ttlMinutes", 30L);
+        ReflectionTestUtils.setField(store, "maxContextChunks", 4);
+        ReflectionTestUtils.setField(store, "maxTurns", 4);
+        ReflectionTestUtils.setField(store, "maxBytes", 1L << 20);
+    }
+
+    @Test
+    void leastRecentlyUsedSessionIsEvictedPastMaxSessions() {
+        ConversationSession first = store.getOrCreate("first");
+        store.getOrCreate("second");
+        store.getOrCreate("third");
+        assertSame(first, store.getOrCreate("first"));
+
+        store.getOrCreate("fourth");
+
+        assertEquals(3, store.size());
+        assertSame(first, store.getOrCreate("first"));
+        assertTrue(store.getOrCreate("second").isEmpty());
+    }
+
+    @Test
+    void sessionsOverTheByteBudgetAreEvictedLeastRecentlyUsedFirst() {
+        ReflectionTestUtils.setField(store, "maxBytes", TURN_BYTES + TURN_BYTES / 2);
+        store.getOrCreate("first").addTurn("q", "a");
+        ConversationSession second = store.getOrCreate("second");
+        second.addTurn("q", "a");
+
+        ConversationSession third = store.getOrCreate("third");
+
+        assertEquals(2, store.size());
+        assertSame(third, store.getOrCreate("third"));
+        assertSame(second, store.getOrCreate("second"));
+    }
+
+    @Test
+    void sessionBeingAccessedIsNeverEvictedForTheBudget() {
+        ReflectionTestUtils.setField(store, "maxBytes", 0L);
+        ConversationSession session = store.getOrCreate("only");
+        session.addTurn("q", "a");
+
+        assertSame(session, store.getOrCreate("only"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void idleSessionsExpireOnTheNextAccess() {
+        ConversationSession idle = store.getOrCreate("idle");
+        idle.addTurn("q", "a");
+        ReflectionTestUtils.setField(idle, "lastAccess", System.currentTimeMillis() - 31 * 60_000L);
+        ConversationSession active = store.getOrCreate("active");
+
+        store.getOrCreate("other");
+
+        assertEquals(2, store.size());
+        assertSame(active, store.getOrCreate("active"));
+        assertTrue(store.getOrCreate("idle").isEmpty());
+    }
+}
@@ -0,0 +1,85 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationSessionTest {
+
+    @Test
+    void onlyTheMostRecentTurnsAreKept() {
+        ConversationSession session = new ConversationSession("s", 4, 2);
+
+        session.addTurn("q1", "a1");
+        session.addTurn("q2", "a2");
+        session.addTurn("q3", "a3");
+
+        assertEquals(List.of(new ConversationSession.Turn("q2", "a2"), new ConversationSession.Turn("q3", "a3")),
+                session.recentTurns());
+    }
+
+    @Test
+    void chunkUnusedForLongestIsEvictedAndOrderIsKept() {
+        ConversationSession session = new ConversationSession("s", 2, 4);
+
+        session.useHits(List.of(hit("a", 1, 0), hit("b", 0, 1)));
+        session.useHits(List.of(hit("a", 1, 0)));
+        session.useHits(List.of(hit("c", 1, 1)));
+
+        // "b" was last used in the first turn, "a" in the second
+        assertEquals(List.of("a", "c"), ids(session.contextChunks()));
+    }
+
+    @Test
+    void hitsWithoutEmbeddingsAreNotCached() {
+        ConversationSession session = new ConversationSession("s", 4, 4);
+
+        session.useHits(List.of(hit("a", 1, 0), new Document("b", "content of b", null, Map.of())));
+
+        assertEquals(List.of("a"), ids(session.contextChunks()));
+    }
+
+    @Test
+    void cachedChunksAreScoredAgainstAFollowUp() {
+        ConversationSession session = new ConversationSession("s", 4, 4);
+        session.useHits(List.of(hit("a", 1, 0), hit("b", 0, 1)));
+
+        List<Document> hits = session.scoreContext(new float[]{1, 0}, 0.5);
+
+        assertEquals(List.of("a"), ids(hits));
+        assertEquals(1.0, hits.get(0).getScore(), 1e-6);
+        assertNull(hits.get(0).getEmbedding());
+    }
+
+    @Test
+    void estimatedBytesFollowChunksAndTurns() {
+        ConversationSession session = new ConversationSession("s", 1, 1);
+        assertEquals(0, session.getEstimatedBytes());
+
+        session.useHits(List.of(hit("a", 1, 0)));
+        long chunkBytes = 128 + 2 * Float.BYTES + 2 * "content of a".length();
+        assertEquals(chunkBytes, session.getEstimatedBytes());
+
+        session.addTurn("question", "answer");
+        long turnBytes = 64 + 2 * ("question".length() + "answer".length());
+        assertEquals(chunkBytes + turnBytes, session.getEstimatedBytes());
+
+        // Evicted chunks and turns no longer count
+        session.useHits(List.of(hit("b", 0, 1)));
+        session.addTurn("q", "a");
+        assertEquals(chunkBytes + 64 + 2 * 2, session.getEstimatedBytes());
+    }
+
+    private static Document hit(String id, float x, float y) {
+        return new Document(id, "content of " + id, List.of(x, y), Map.of());
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+}
@@ -0,0 +1,77 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FullPrecisionVectorStoreTest {
+
+    private static final int DIMENSION = 4;
+    // [short idLength][64 id bytes][float32 x dimension]
+    private static final int SLOT_BYTES = 2 + 64 + DIMENSION * 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void vectorsSurviveReopen() throws IOException {
+        Path file = directory.resolve("vectors.bin");
+        try (FullPrecisionVectorStore store = new FullPrecisionVectorStore(file, DIMENSION)) {
+            store.put("a", vector(1));
+            store.put("b", vector(2));
+            store.force();
+            store.put("a", vector(3));
+        }
+        try (FullPrecisionVectorStore store = new FullPrecisionVectorStore(file, DIMENSION)) {
+            assertEquals(2, store.size());
+            assertEquals(vector(3), store.get("a"));
+            assertEquals(vector(2), store.get("b"));
+            assertEquals(1.0, store.cosine("b", new float[]{2, 3, 4, 5}), 1e-6);
+            assertTrue(Double.isNaN(store.cosine("missing", new float[DIMENSION])));
+        }
+    }
+
+    @Test
+    void emptySlotBeforeWrittenOnesIsSkipped() throws IOException {
+        Path file = directory.resolve("vectors.bin");
+        try (FullPrecisionVectorStore store = new FullPrecisionVectorStore(file, DIMENSION)) {
+            store.put("a", vector(1));
+            store.put("b", vector(2));
+            store.put("c", vector(3));
+        }
+
+        // Slot 1 never reached disk while slot 2 did
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Short.BYTES), SLOT_BYTES);
+        }
+
+        try (FullPrecisionVectorStore store = new FullPrecisionVectorStore(file, DIMENSION)) {
+            assertEquals(2, store.size());
+            assertFalse(store.contains("b"));
+            assertEquals(vector(3), store.get("c"));
+
+            // New vectors go after the highest occupied slot instead of over "c"
+            store.put("d", vector(4));
+            assertEquals(vector(3), store.get("c"));
+            assertEquals(vector(4), store.get("d"));
+        }
+        try (FullPrecisionVectorStore store = new FullPrecisionVectorStore(file, DIMENSION)) {
+            assertEquals(3, store.size());
+            assertEquals(vector(3), store.get("c"));
+            assertEquals(vector(4), store.get("d"));
+        }
+    }
+
+    private static List<Float> vector(int seed) {
+        return List.of((float) seed, seed + 1f, seed + 2f, seed + 3f);
+    }
+}
@@ -0,0 +1,185 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionLogTest {
+
+    // [int length][int crc][long sequence] + 10 byte payload
+    private static final int RECORD_BYTES = 16 + 10;
+    // Room for two records plus the end marker, so every third append rolls
+    private static final int SMALL_SEGMENT = 2 * RECORD_BYTES + 12;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restartReplaysOnlyUnacknowledgedEntries() throws IOException {
+        try (IngestionLog log = new IngestionLog(directory, 1 << 16, true)) {
+            for (int i = 1; i <= 5; i++) {
+                log.append(payload(i));
+            }
+            log.acknowledge(List.of(1L, 2L, 4L));
+            assertEquals(2, log.getCheckpoint());
+            assertEquals(2, log.pendingCount());
+        }
+
+        try (IngestionLog log = new IngestionLog(directory, 1 << 16, true)) {
+            assertEquals(List.of(3L, 5L), log.recoveredSequences());
+            assertEquals("payload-03", new String(log.read(3).payload(), StandardCharsets.UTF_8));
+            assertEquals(2, log.getCheckpoint());
+            assertEquals(6, log.append(payload(6)));
+        }
+    }
+
+    @Test
+    void pendingEntriesAreReadBackFromEverySegment() throws IOException {
+        try (IngestionLog log = new IngestionLog(directory, SMALL_SEGMENT, true)) {
+            for (int i = 1; i <= 5; i++) {
+                log.append(payload(i));
+            }
+            assertArrayEquals(payload(1), log.read(1).payload());
+            assertArrayEquals(payload(5), log.read(5).payload());
+
+            log.acknowledge(List.of(1L));
+            assertThrows(IllegalArgumentException.class, () -> log.read(1));
+        }
+
+        try (IngestionLog log = new IngestionLog(directory, SMALL_SEGMENT, true)) {
+            for (long sequence : log.recoveredSequences()) {
+                assertArrayEquals(payload((int) sequence), log.read(sequence).payload());
+            }
+            assertEquals(6, log.append(payload(6)));
+            assertArrayEquals(payload(6), log.read(6).payload());
+        }
+    }
+
+    @Test
+    void tornTailEndsTheSegmentOnReplay() throws IOException {
+        try (IngestionLog log = new IngestionLog(directory, 1 << 16, true)) {
+            for (int i = 1; i <= 3; i++) {
+                log.append(payload(i));
+            }
+        }
+
+        // Fourth record with header and payload on disk but the length never written
+        writeAt(segment(1), 3 * RECORD_BYTES + Integer.BYTES,
+                ByteBuffer.allocate(12 + 10).putInt(0).putLong(4).put(payload(4)).flip());
+
+        try (IngestionLog log = new IngestionLog(directory, 1 << 16, true)) {
+            assertEquals(List.of(1L, 2L, 3L), log.recoveredSequences());
+            assertEquals(4, log.append(payload(4)));
+        }
+        try (IngestionLog log = new IngestionLog(directory, 1 << 16, true)) {
+            assertEquals(List.of(1L, 2L, 3L, 4L), log.recoveredSequences());
+        }
+    }
+
+    @Test
+    void corruptRecordEndsTheSegmentOnReplay() throws IOException {
+        try (IngestionLog log = new IngestionLog(directory, 1 << 16, true)) {
+            for (int i = 1; i <= 3; i++) {
+                log.append(payload(i));
+            }
+        }
+
+        // Flip a payload byte of the third record
+        writeAt(segment(1), 2 * RECORD_BYTES + 16, ByteBuffer.wrap(new byte[]{'X'}));
+
+        try (IngestionLog log = new IngestionLog(directory, 1 << 16, true)) {
+            assertEquals(List.of(1L, 2L), log.recoveredSequences());
+        }
+    }
+
+    @Test
+    void segmentsBelowTheCheckpointAreDeleted() throws IOException {
+        try (IngestionLog log = new IngestionLog(directory, SMALL_SEGMENT, true)) {
+            for (int i = 1; i <= 6; i++) {
+                log.append(payload(i));
+            }
+            assertEquals(List.of(segment(1), segment(3), segment(5)), segmentFiles());
+
+            log.acknowledge(List.of(1L, 2L, 3L));
+            assertEquals(List.of(segment(3), segment(5)), segmentFiles());
+
+            log.acknowledge(List.of(4L));
+            assertEquals(List.of(segment(5)), segmentFiles());
+        }
+
+        try (IngestionLog log = new IngestionLog(directory, SMALL_SEGMENT, true)) {
+            assertEquals(4, log.getCheckpoint());
+            assertEquals(List.of(5L, 6L), log.recoveredSequences());
+        }
+        assertFalse(Files.exists(directory.resolve("checkpoint.tmp")));
+        assertFalse(Files.exists(directory.resolve("acks.log.tmp")));
+    }
+
+    @Test
+    void outOfOrderAcksSurviveRestart() throws IOException {
+        try (IngestionLog log = new IngestionLog(directory, 1 << 16, true)) {
+            for (int i = 1; i <= 4; i++) {
+                log.append(payload(i));
+            }
+            log.acknowledge(List.of(1L, 3L));
+        }
+        try (IngestionLog log = new IngestionLog(directory, 1 << 16, true)) {
+            assertEquals(1, log.getCheckpoint());
+            assertEquals(List.of(2L, 4L), log.recoveredSequences());
+            log.acknowledge(List.of(2L));
+            assertEquals(3, log.getCheckpoint());
+        }
+    }
+
+    @Test
+    void crashRightAfterRollingDoesNotBlockAppends() throws IOException {
+        try (IngestionLog log = new IngestionLog(directory, SMALL_SEGMENT, true)) {
+            log.append(payload(1));
+            log.append(payload(2));
+        }
+
+        // The next append rolled to segment 3 and crashed before its record's length was written
+        writeAt(segment(3), Integer.BYTES, ByteBuffer.allocate(12 + 10).putInt(0).putLong(3).put(payload(3)).flip());
+
+        try (IngestionLog log = new IngestionLog(directory, SMALL_SEGMENT, true)) {
+            assertEquals(List.of(1L, 2L), log.recoveredSequences());
+            assertEquals(3, log.append(payload(3)));
+            assertEquals(4, log.append(payload(4)));
+        }
+        try (IngestionLog log = new IngestionLog(directory, SMALL_SEGMENT, true)) {
+            assertEquals(List.of(1L, 2L, 3L, 4L), log.recoveredSequences());
+        }
+    }
+
+    private static byte[] payload(int sequence) {
+        return String.format("payload-%02d", sequence).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Path segment(long firstSequence) {
+        return directory.resolve(String.format("segment-%020d.log", firstSequence));
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    private static void writeAt(Path file, long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.Document;
+import com.mohamed.langchain_milvus_rag.entity.IngestionJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionQueueServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final FakeRAGService ragService = new FakeRAGService();
+    private final FakeMilvusService milvusService = new FakeMilvusService();
+    private IngestionQueueService queueService;
+
+    /**
+     * Splits each document into one segment with a fixed embedding.
+     */
+    private static class FakeRAGService extends RAGService {
+
+        final AtomicInteger prepared = new AtomicInteger();
+
+        @Override
+        public List<Document> prepareDocuments(String documentId, String content, Map<String, String> metadata) {
+            prepared.incrementAndGet();
+            return List.of(new Document(documentId + "-0", content, List.of(1f, 0f, 0f), metadata));
+        }
+    }
+
+    /**
+     * Fails the first {@code failures} inserts, then records what is inserted.
+     */
+    private static class FakeMilvusService extends MilvusService {
+
+        final List<String> inserted = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public void insertDocuments(List<Document> documents) {
+            if (failures.getAndDecrement() > 0) {
+                throw new RuntimeException("Milvus unavailable");
+            }
+            documents.forEach(document -> inserted.add(document.getId()));
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        queueService = newQueueService();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        queueService.stop();
+    }
+
+    private IngestionQueueService newQueueService() {
+        IngestionQueueService service = new IngestionQueueService();
+        ReflectionTestUtils.setField(service, "ragService", ragService);
+        ReflectionTestUtils.setField(service, "milvusService", milvusService);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "logDir", directory.toString());
+        ReflectionTestUtils.setField(service, "segmentBytes", 1 << 16);
+        ReflectionTestUtils.setField(service, "fsync", false);
+        ReflectionTestUtils.setField(service, "workers", 1);
+        ReflectionTestUtils.setField(service, "batchSize", 16);
+        ReflectionTestUtils.setField(service, "maxPending", 100);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "jobRetention", 100);
+        ReflectionTestUtils.setField(service, "maxRetainedBytes", 1L << 20);
+        return service;
+    }
+
+    @Test
+    void acceptedDocumentsAreReadBackFromTheLogAndInserted() throws Exception {
+        queueService.start();
+        IngestionJob first = queueService.submit("first document", Map.of("source", "a"));
+        IngestionJob second = queueService.submit("second document", Map.of("source", "b"));
+
+        awaitStatus(first, IngestionJob.Status.COMPLETED);
+        awaitStatus(second, IngestionJob.Status.COMPLETED);
+        assertTrue(milvusService.inserted.containsAll(List.of(first.getJobId() + "-0", second.getJobId() + "-0")));
+    }
+
+    @Test
+    void failedInsertRetriesWithTheSegmentsAlreadyEmbedded() throws Exception {
+        milvusService.failures.set(1);
+        queueService.start();
+        IngestionJob job = queueService.submit("retried document", Map.of());
+
+        awaitStatus(job, IngestionJob.Status.COMPLETED);
+        assertEquals(1, job.getAttempts());
+        assertEquals(1, ragService.prepared.get());
+        assertEquals(List.of(job.getJobId() + "-0"), milvusService.inserted);
+    }
+
+    @Test
+    void segmentsOverTheRetainedBudgetArePreparedAgain() throws Exception {
+        ReflectionTestUtils.setField(queueService, "maxRetainedBytes", 0L);
+        milvusService.failures.set(1);
+        queueService.start();
+        IngestionJob job = queueService.submit("retried document", Map.of());
+
+        awaitStatus(job, IngestionJob.Status.COMPLETED);
+        assertEquals(2, ragService.prepared.get());
+    }
+
+    @Test
+    void unacknowledgedDocumentsAreReplayedAfterRestart() throws Exception {
+        milvusService.failures.set(Integer.MAX_VALUE);
+        queueService.start();
+        IngestionJob job = queueService.submit("survives a restart", Map.of());
+        queueService.stop();
+
+        milvusService.failures.set(0);
+        queueService = newQueueService();
+        queueService.start();
+
+        IngestionJob replayed = queueService.getJob(job.getJobId()).orElseThrow();
+        awaitStatus(replayed, IngestionJob.Status.COMPLETED);
+        assertEquals(List.of(job.getJobId() + "-0"), milvusService.inserted);
+    }
+
+    @Test
+    void disabledServiceLeavesTheLogAloneAndRejectsDocuments() throws Exception {
+        ReflectionTestUtils.setField(queueService, "enabled", false);
+        queueService.start();
+
+        assertThrows(IllegalStateException.class, () -> queueService.submit("rejected", Map.of()));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static void awaitStatus(IngestionJob job, IngestionJob.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (job.getStatus() != status && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(status, job.getStatus());
+    }
+}
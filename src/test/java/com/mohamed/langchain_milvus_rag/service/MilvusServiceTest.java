@@ -0,0 +1,233 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.Document;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.grpc.*;
+import io.milvus.param.R;
+import io.milvus.param.dml.QueryParam;
+import io.milvus.param.dml.SearchParam;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+class MilvusServiceTest {
+
+    private static final double THRESHOLD = 0.7;
+    private static final Pattern RADIUS = Pattern.compile("\"radius\":([-0-9.Ee]+)");
+    private static final Pattern QUOTED = Pattern.compile("\"([^\"]+)\"");
+
+    @TempDir
+    Path directory;
+
+    private final MilvusServiceClient milvusClient = Mockito.mock(MilvusServiceClient.class);
+    private final MilvusService milvusService = new MilvusService();
+    private final VectorCompression vectorCompression = new VectorCompression();
+
+    // float32 scores as Milvus returns them, best first, straddling the threshold
+    private final Map<String, Float> candidates = new LinkedHashMap<>();
+    private String lastParams;
+    private long lastTopK;
+
+    @BeforeEach
+    void setUp() {
+        candidates.put("above", 0.9f);
+        candidates.put("equal", (float) THRESHOLD);
+        candidates.put("below", Math.nextDown((float) THRESHOLD));
+
+        ReflectionTestUtils.setField(milvusService, "milvusClient", milvusClient);
+        ReflectionTestUtils.setField(milvusService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(milvusService, "vectorCompression", vectorCompression);
+        ReflectionTestUtils.setField(milvusService, "collectionName", "documents");
+        ReflectionTestUtils.setField(milvusService, "maxResults", 5);
+        ReflectionTestUtils.setField(milvusService, "similarityThreshold", THRESHOLD);
+        ReflectionTestUtils.setField(milvusService, "nprobe", 10);
+        ReflectionTestUtils.setField(milvusService, "twoPhaseFetch", false);
+
+        when(milvusClient.search(any(SearchParam.class))).thenAnswer(invocation -> search(invocation.getArgument(0)));
+        when(milvusClient.query(any(QueryParam.class))).thenAnswer(invocation -> query(invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        vectorCompression.close();
+    }
+
+    @Test
+    void rangeSearchRadiusKeepsScoresEqualToTheThreshold() {
+        ReflectionTestUtils.setField(milvusService, "rangeSearch", true);
+
+        List<Document> hits = milvusService.searchSimilarDocuments(List.of(1f, 0f));
+
+        assertEquals(List.of("above", "equal"), ids(hits));
+        Matcher radius = RADIUS.matcher(lastParams);
+        assertTrue(radius.find(), lastParams);
+        assertEquals(Math.nextDown((float) THRESHOLD), Float.parseFloat(radius.group(1)));
+    }
+
+    @Test
+    void topKOnlySearchAppliesTheSameBoundaryClientSide() {
+        ReflectionTestUtils.setField(milvusService, "rangeSearch", false);
+
+        List<Document> hits = milvusService.searchSimilarDocuments(List.of(1f, 0f));
+
+        assertEquals(List.of("above", "equal"), ids(hits));
+        assertFalse(RADIUS.matcher(lastParams).find(), lastParams);
+    }
+
+    @Test
+    void failedSearchStatusIsReportedInsteadOfReadingMissingData() {
+        when(milvusClient.search(any(SearchParam.class)))
+                .thenReturn(R.failed(new StatusRuntimeException(Status.DEADLINE_EXCEEDED)));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> milvusService.searchSimilarDocuments(List.of(1f, 0f)));
+
+        assertTrue(e.getMessage().contains("DEADLINE_EXCEEDED"), e.getMessage());
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, Status.fromThrowable(e).getCode());
+    }
+
+    @Test
+    void failedFetchStatusIsReportedInsteadOfReadingMissingData() {
+        ReflectionTestUtils.setField(milvusService, "twoPhaseFetch", true);
+        when(milvusClient.query(any(QueryParam.class)))
+                .thenReturn(R.failed(R.Status.UnexpectedError, "collection not loaded"));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> milvusService.searchSimilarDocuments(List.of(1f, 0f)));
+
+        assertTrue(e.getMessage().contains("collection not loaded"), e.getMessage());
+    }
+
+    @Test
+    void compressedHitsAreOversampledAndRescoredFromFullPrecisionVectors() throws IOException {
+        enableCompression();
+        ReflectionTestUtils.setField(milvusService, "rangeSearch", true);
+        ReflectionTestUtils.setField(milvusService, "maxResults", 2);
+
+        List<Document> hits = milvusService.searchSimilarDocuments(List.of(1f, 0f, 0f, 0f));
+
+        // "x" looked best compressed but is below the threshold exactly; "w" was only inside the margin
+        assertEquals(List.of("w", "y"), ids(hits));
+        assertEquals(1.0, hits.get(0).getScore(), 1e-6);
+        assertEquals(0.9, hits.get(1).getScore(), 1e-6);
+        assertEquals("content of w", hits.get(0).getContent());
+        assertEquals(6, lastTopK);
+        Matcher radius = RADIUS.matcher(lastParams);
+        assertTrue(radius.find(), lastParams);
+        assertEquals(Math.nextDown((float) (THRESHOLD - 0.2)), Float.parseFloat(radius.group(1)));
+    }
+
+    @Test
+    void collectionsOtherThanTheWriteCollectionKeepTheirCompressedScores() throws IOException {
+        enableCompression();
+        ReflectionTestUtils.setField(milvusService, "rangeSearch", true);
+        ReflectionTestUtils.setField(milvusService, "maxResults", 2);
+
+        List<Document> hits = milvusService.searchSimilarDocuments("archive", List.of(1f, 0f, 0f, 0f));
+
+        assertEquals(List.of("x", "y"), ids(hits));
+        assertEquals(0.99f, hits.get(0).getScore(), 1e-6);
+        assertEquals(2, lastTopK);
+    }
+
+    /**
+     * Four-dimensional vectors stored as two. The compressed scores below are
+     * what the search returns; the full-precision vectors disagree with them.
+     */
+    private void enableCompression() throws IOException {
+        ReflectionTestUtils.setField(vectorCompression, "enabled", true);
+        ReflectionTestUtils.setField(vectorCompression, "fullDimension", 4);
+        ReflectionTestUtils.setField(vectorCompression, "storedDimension", 2);
+        ReflectionTestUtils.setField(vectorCompression, "oversample", 3);
+        ReflectionTestUtils.setField(vectorCompression, "scoreMargin", 0.2);
+        ReflectionTestUtils.setField(vectorCompression, "vectorFile", directory.resolve("vectors.bin").toString());
+        vectorCompression.open();
+
+        candidates.clear();
+        candidates.put("x", 0.99f);
+        candidates.put("y", 0.95f);
+        candidates.put("z", 0.9f);
+        candidates.put("w", 0.65f);
+        FullPrecisionVectorStore vectorStore = vectorCompression.getVectorStore();
+        vectorStore.put("x", List.of(0.6f, 0f, 0.8f, 0f));
+        vectorStore.put("y", List.of(0.9f, 0f, (float) Math.sqrt(1 - 0.81), 0f));
+        vectorStore.put("z", List.of(0.8f, 0f, 0.6f, 0f));
+        vectorStore.put("w", List.of(1f, 0f, 0f, 0f));
+    }
+
+    /**
+     * Answers like a COSINE search: with a radius only hits scoring strictly above
+     * it come back, compared in double precision as the server does.
+     */
+    private R<SearchResults> search(SearchParam searchParam) {
+        lastParams = searchParam.getParams();
+        lastTopK = searchParam.getTopK();
+        Matcher radius = RADIUS.matcher(lastParams);
+        double floor = radius.find() ? Double.parseDouble(radius.group(1)) : Double.NEGATIVE_INFINITY;
+
+        List<String> ids = new ArrayList<>();
+        List<Float> scores = new ArrayList<>();
+        for (Map.Entry<String, Float> candidate : candidates.entrySet()) {
+            if (candidate.getValue() > floor && ids.size() < lastTopK) {
+                ids.add(candidate.getKey());
+                scores.add(candidate.getValue());
+            }
+        }
+
+        SearchResultData data = SearchResultData.newBuilder()
+                .setNumQueries(1)
+                .setTopK(ids.size())
+                .addTopks(ids.size())
+                .setIds(IDs.newBuilder().setStrId(StringArray.newBuilder().addAllData(ids)))
+                .addAllScores(scores)
+                .addFieldsData(varchar("content", ids.stream().map(id -> "content of " + id).toList()))
+                .addFieldsData(varchar("metadata", ids.stream().map(id -> "{}").toList()))
+                .build();
+        return R.success(SearchResults.newBuilder().setResults(data).build());
+    }
+
+    /**
+     * Answers the second phase of a two-phase search for the quoted ids in its expression.
+     */
+    private R<QueryResults> query(QueryParam queryParam) {
+        List<String> ids = new ArrayList<>();
+        Matcher quoted = QUOTED.matcher(queryParam.getExpr());
+        while (quoted.find()) {
+            ids.add(quoted.group(1));
+        }
+        return R.success(QueryResults.newBuilder()
+                .addFieldsData(varchar("id", ids))
+                .addFieldsData(varchar("content", ids.stream().map(id -> "content of " + id).toList()))
+                .addFieldsData(varchar("metadata", ids.stream().map(id -> "{}").toList()))
+                .build());
+    }
+
+    private static FieldData varchar(String name, List<String> values) {
+        return FieldData.newBuilder()
+                .setFieldName(name)
+                .setType(DataType.VarChar)
+                .setScalars(ScalarField.newBuilder().setStringData(StringArray.newBuilder().addAllData(values)))
+                .build();
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+}
@@ -0,0 +1,134 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import com.mohamed.langchain_milvus_rag.entity.QueryTrace;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryLogTest {
+
+    private static final int DIMENSION = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tracesRoundTripAcrossRotatedFiles() throws IOException {
+        try (SlowQueryLog log = new SlowQueryLog(directory, 400, 10)) {
+            for (int i = 0; i < 6; i++) {
+                log.append(trace(i));
+            }
+        }
+        assertTrue(Files.exists(directory.resolve("slow-queries.1.log")));
+
+        List<QueryTrace> traces = SlowQueryLog.read(directory);
+        assertEquals(6, traces.size());
+        for (int i = 0; i < 6; i++) {
+            QueryTrace trace = traces.get(i);
+            assertEquals("trace-" + i, trace.getTraceId());
+            assertEquals("question " + i, trace.getQuestion());
+            assertNull(trace.getError());
+            assertEquals(i * 1000L, trace.getTotalMicros());
+            assertEquals((float) i, trace.getQueryEmbedding()[0], 0);
+            assertEquals(List.of("doc-" + i), trace.getDocumentIds());
+        }
+    }
+
+    @Test
+    void oldestFilesAreDeletedPastMaxFiles() throws IOException {
+        try (SlowQueryLog log = new SlowQueryLog(directory, 1, 2)) {
+            for (int i = 0; i < 5; i++) {
+                log.append(trace(i));
+            }
+        }
+        assertFalse(Files.exists(directory.resolve("slow-queries.3.log")));
+        List<QueryTrace> traces = SlowQueryLog.read(directory);
+        assertEquals(List.of("trace-3", "trace-4"), traces.stream().map(QueryTrace::getTraceId).toList());
+    }
+
+    @Test
+    void negativeOrOversizedRecordLengthEndsTheFile() throws IOException {
+        try (SlowQueryLog log = new SlowQueryLog(directory, 1 << 20, 2)) {
+            log.append(trace(0));
+        }
+        Path file = directory.resolve("slow-queries.log");
+
+        Files.write(file, ByteBuffer.allocate(8).putInt(-5).putInt(0).array(), StandardOpenOption.APPEND);
+        assertEquals(1, SlowQueryLog.read(file).size());
+
+        try (SlowQueryLog log = new SlowQueryLog(directory, 1 << 20, 2)) {
+            log.append(trace(1));
+        }
+        Files.write(file, ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE).putInt(0).array(), StandardOpenOption.APPEND);
+        assertEquals(2, SlowQueryLog.read(file).size());
+    }
+
+    @Test
+    void tracesAppendedAfterATornTailAreReadBack() throws IOException {
+        try (SlowQueryLog log = new SlowQueryLog(directory, 1 << 20, 2)) {
+            log.append(trace(0));
+            log.append(trace(1));
+        }
+        // A crash part-way through the last record
+        Path file = directory.resolve("slow-queries.log");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        try (SlowQueryLog log = new SlowQueryLog(directory, 1 << 20, 2)) {
+            log.append(trace(2));
+        }
+
+        List<QueryTrace> traces = SlowQueryLog.read(file);
+        assertEquals(List.of("trace-0", "trace-2"), traces.stream().map(QueryTrace::getTraceId).toList());
+    }
+
+    @Test
+    void tornHeaderIsWrittenAgain() throws IOException {
+        Path file = directory.resolve("slow-queries.log");
+        Files.write(file, new byte[]{'R', 'A', 'G'});
+
+        try (SlowQueryLog log = new SlowQueryLog(directory, 1 << 20, 2)) {
+            log.append(trace(0));
+        }
+
+        assertEquals(1, SlowQueryLog.read(file).size());
+    }
+
+    @Test
+    void corruptLengthInsideAValidRecordEndsTheFile() throws IOException {
+        try (SlowQueryLog log = new SlowQueryLog(directory, 1 << 20, 2)) {
+            log.append(trace(0));
+        }
+        // A record whose CRC matches but whose trace id claims a huge length
+        byte[] payload = ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE - 1).putInt(0).array();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        Path file = directory.resolve("slow-queries.log");
+        Files.write(file, ByteBuffer.allocate(8 + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload).array(), StandardOpenOption.APPEND);
+
+        assertEquals(1, SlowQueryLog.read(file).size());
+    }
+
+    private static QueryTrace trace(int i) {
+        QueryTrace trace = new QueryTrace("trace-" + i, "question " + i);
+        float[] embedding = new float[DIMENSION];
+        embedding[0] = i;
+        trace.setQueryEmbedding(embedding);
+        trace.setTotalMicros(i * 1000L);
+        trace.addHit("doc-" + i, 0.9);
+        return trace;
+    }
+}
@@ -0,0 +1,164 @@
+package com.mohamed.langchain_milvus_rag.service;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotServiceTest {
+
+    private static final int DIMENSION = 4;
+    private static final int ROWS = 23;
+
+    @TempDir
+    Path directory;
+
+    private final FakeMilvusService milvusService = new FakeMilvusService();
+    private final SnapshotService snapshotService = new SnapshotService();
+
+    /**
+     * Pages rows by id like the real collection and records what is written back.
+     */
+    private static class FakeMilvusService extends MilvusService {
+
+        final TreeMap<String, Integer> index = new TreeMap<>();
+        final List<String> ids = new ArrayList<>();
+        final List<List<Float>> embeddings = new ArrayList<>();
+        final List<String> contents = new ArrayList<>();
+        final List<String> metadata = new ArrayList<>();
+        final List<RowBatch> written = new ArrayList<>();
+        int failOnPage = -1;
+        int pages;
+
+        void add(String id, List<Float> embedding, String content, String json) {
+            index.put(id, ids.size());
+            ids.add(id);
+            embeddings.add(embedding);
+            contents.add(content);
+            metadata.add(json);
+        }
+
+        @Override
+        public RowBatch queryRowsAfter(String afterId, int limit) {
+            if (pages++ == failOnPage) {
+                throw new RuntimeException("Milvus unavailable");
+            }
+            RowBatch page = new RowBatch(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            for (int i : index.tailMap(afterId, false).values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.ids().add(ids.get(i));
+                page.embeddings().add(embeddings.get(i));
+                page.contents().add(contents.get(i));
+                page.metadata().add(metadata.get(i));
+            }
+            return page;
+        }
+
+        @Override
+        public void insertRows(RowBatch rows) {
+            written.add(rows);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(5);
+        for (int i = 0; i < ROWS; i++) {
+            List<Float> embedding = new ArrayList<>();
+            for (int d = 0; d < DIMENSION; d++) {
+                embedding.add(random.nextFloat());
+            }
+            milvusService.add(String.format("doc-%03d", i), embedding, "content " + i + " é中", "{\"source\":\"s" + i + "\"}");
+        }
+        ReflectionTestUtils.setField(snapshotService, "milvusService", milvusService);
+        ReflectionTestUtils.setField(snapshotService, "dimension", DIMENSION);
+        ReflectionTestUtils.setField(snapshotService, "batchSize", 5);
+    }
+
+    @Test
+    void exportThenImportRestoresEveryRow() throws IOException {
+        Path snapshot = directory.resolve("documents.snap");
+
+        assertEquals(ROWS, snapshotService.exportTo(snapshot));
+        assertFalse(Files.exists(directory.resolve("documents.snap.tmp")));
+
+        assertEquals(ROWS, snapshotService.importFrom(snapshot));
+        List<String> ids = new ArrayList<>();
+        List<List<Float>> embeddings = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        List<String> metadata = new ArrayList<>();
+        for (MilvusService.RowBatch batch : milvusService.written) {
+            assertTrue(batch.size() <= 5);
+            ids.addAll(batch.ids());
+            embeddings.addAll(batch.embeddings());
+            contents.addAll(batch.contents());
+            metadata.addAll(batch.metadata());
+        }
+        assertEquals(milvusService.ids, ids);
+        assertEquals(milvusService.embeddings, embeddings);
+        assertEquals(milvusService.contents, contents);
+        assertEquals(milvusService.metadata, metadata);
+    }
+
+    @Test
+    void failedExportLeavesNoSnapshotBehind() {
+        Path snapshot = directory.resolve("documents.snap");
+        milvusService.failOnPage = 2;
+
+        assertThrows(RuntimeException.class, () -> snapshotService.exportTo(snapshot));
+        assertFalse(Files.exists(snapshot));
+        assertFalse(Files.exists(directory.resolve("documents.snap.tmp")));
+    }
+
+    @Test
+    void snapshotWithoutFooterIsRejected() throws IOException {
+        Path snapshot = directory.resolve("partial.snap");
+        try (OutputStream out = Files.newOutputStream(snapshot);
+             SnapshotFile.Writer writer = new SnapshotFile.Writer(out, DIMENSION)) {
+            writer.writeBlock(milvusService.queryRowsAfter("", 5));
+        }
+
+        assertThrows(IOException.class, () -> snapshotService.importFrom(snapshot));
+        assertTrue(milvusService.written.isEmpty());
+    }
+
+    @Test
+    void truncatedSnapshotIsRejectedBeforeAnyRowIsImported() throws IOException {
+        Path snapshot = directory.resolve("documents.snap");
+        snapshotService.exportTo(snapshot);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 20);
+        }
+
+        assertThrows(IOException.class, () -> snapshotService.importFrom(snapshot));
+        assertTrue(milvusService.written.isEmpty());
+    }
+
+    @Test
+    void corruptBlockIsRejectedBeforeAnyRowIsImported() throws IOException {
+        Path snapshot = directory.resolve("documents.snap");
+        snapshotService.exportTo(snapshot);
+        // Change one letter of the last row's content: the structure stays intact, only the CRC catches it
+        byte[] bytes = Files.readAllBytes(snapshot);
+        int position = new String(bytes, StandardCharsets.ISO_8859_1).lastIndexOf("content 22");
+        bytes[position] = 'C';
+        Files.write(snapshot, bytes);
+
+        assertThrows(IOException.class, () -> snapshotService.importFrom(snapshot));
+        assertTrue(milvusService.written.isEmpty());
+    }
+}
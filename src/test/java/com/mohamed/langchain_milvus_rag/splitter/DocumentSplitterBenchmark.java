@@ -0,0 +1,68 @@
+package com.mohamed.langchain_milvus_rag.splitter;
+
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ParallelDocumentSplitter} with {@code DocumentSplitters.recursive}.
+ * Run with the GC profiler to see allocation per split:
+ * <pre>
+ * ./mvnw test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     "-Dexec.args=-cp %classpath org.openjdk.jmh.Main DocumentSplitterBenchmark -prof gc"
+ * </pre>
+ * JMH forks a fresh JVM with the launching JVM's {@code java.class.path}, so it
+ * has to be started as its own process with the test classpath rather than
+ * inside Maven with {@code exec:java}. {@link #main} works from an IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentSplitterBenchmark {
+
+    @Param({"50", "500", "5000"})
+    private int paragraphs;
+
+    private Document document;
+    private DocumentSplitter recursive;
+    private DocumentSplitter parallel;
+
+    @Setup
+    public void setUp() {
+        document = Document.from(ParallelDocumentSplitterTest.generate(new Random(42), paragraphs, true));
+        recursive = DocumentSplitters.recursive(1000, 200);
+        parallel = new ParallelDocumentSplitter(1000, 200, 20_000);
+    }
+
+    @Benchmark
+    public List<TextSegment> recursive() {
+        return recursive.split(document);
+    }
+
+    @Benchmark
+    public List<TextSegment> parallel() {
+        return parallel.split(document);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DocumentSplitterBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,95 @@
+package com.mohamed.langchain_milvus_rag.splitter;
+
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelDocumentSplitterTest {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int CHUNK_OVERLAP = 200;
+
+    private final DocumentSplitter reference = DocumentSplitters.recursive(CHUNK_SIZE, CHUNK_OVERLAP);
+
+    @Test
+    void matchesRecursiveSplitterOnShortDocument() {
+        assertSameSegments("The capital of France is Paris. It is known for the Eiffel Tower and Louvre Museum.", 1_000_000);
+    }
+
+    @Test
+    void matchesRecursiveSplitterOnProse() {
+        Random random = new Random(1);
+        for (int i = 0; i < 20; i++) {
+            assertSameSegments(generate(random, 200, false), 1_000_000);
+        }
+    }
+
+    @Test
+    void matchesRecursiveSplitterWithIrregularWhitespaceAndLongLines() {
+        Random random = new Random(2);
+        for (int i = 0; i < 20; i++) {
+            assertSameSegments(generate(random, 200, true), 1_000_000);
+        }
+    }
+
+    @Test
+    void parallelScanMatchesSequentialScan() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10; i++) {
+            String text = generate(random, 2000, true);
+            // A tiny threshold forces many fork-join regions
+            assertSameSegments(text, 512);
+        }
+    }
+
+    private void assertSameSegments(String text, int parallelThreshold) {
+        Document document = Document.from(text);
+        List<String> expected = reference.split(document).stream().map(TextSegment::text).toList();
+        List<String> actual = new ParallelDocumentSplitter(CHUNK_SIZE, CHUNK_OVERLAP, parallelThreshold)
+                .split(document).stream().map(TextSegment::text).toList();
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Paragraphs of sentences; in irregular mode also mixes CRLF, blank lines
+     * with trailing spaces, single line breaks and paragraphs longer than a chunk.
+     */
+    static String generate(Random random, int paragraphs, boolean irregular) {
+        String[] words = {"milvus", "vector", "index", "embedding", "segment", "query", "latency", "recall",
+                "paris", "tower", "museum", "history", "spring", "service", "thread", "cache"};
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < paragraphs; p++) {
+            int sentences = irregular && random.nextInt(10) == 0 ? 40 : 1 + random.nextInt(6);
+            for (int s = 0; s < sentences; s++) {
+                int length = 4 + random.nextInt(14);
+                for (int w = 0; w < length; w++) {
+                    String word = words[random.nextInt(words.length)];
+                    sb.append(w == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                    sb.append(w == length - 1 ? ". " : " ");
+                }
+                if (irregular && random.nextInt(8) == 0) {
+                    sb.append(random.nextBoolean() ? "\n" : "\r\n");
+                }
+            }
+            if (!irregular) {
+                sb.append("\n\n");
+            } else {
+                switch (random.nextInt(4)) {
+                    case 0 -> sb.append("\n\n");
+                    case 1 -> sb.append("  \r\n\r\n\t");
+                    case 2 -> sb.append("\n \n \n");
+                    default -> sb.append("\n\n\n\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+}